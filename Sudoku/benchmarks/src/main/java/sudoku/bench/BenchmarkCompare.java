@@ -0,0 +1,127 @@
+/**
+ *
+ * @author jithu
+ */
+package sudoku.bench;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Compares two JMH result files written with -rf json, for example a run
+// on the main branch against a run with a change:
+//   java -cp benchmarks.jar sudoku.bench.BenchmarkCompare base.json new.json [threshold %]
+// Prints score and allocation per operation (from -prof gc) side by side
+// and exits with 1 if any benchmark got slower than the threshold.
+public class BenchmarkCompare {
+
+    private static final double DEFAULT_THRESHOLD = 5.0;
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BenchmarkCompare <baseline.json> <current.json> [threshold %]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        Map<String, JsonObject> baseline = load(args[0]);
+        Map<String, JsonObject> current = load(args[1]);
+
+        int regressions = 0;
+        System.out.printf("%-60s %14s %14s %8s %14s %14s%n",
+                "benchmark", "baseline", "current", "change", "base B/op", "current B/op");
+        for (Map.Entry<String, JsonObject> entry : current.entrySet()) {
+            JsonObject now = entry.getValue();
+            JsonObject before = baseline.get(entry.getKey());
+            double score = score(now);
+            String unit = now.getAsJsonObject("primaryMetric").get("scoreUnit").getAsString();
+            if (before == null) {
+                System.out.printf("%-60s %14s %14s %8s %14s %14s%n", entry.getKey(), "-",
+                        format(score, unit), "new", "-", allocation(now));
+                continue;
+            }
+            double change = 100.0 * (score - score(before)) / score(before);
+            // Throughput is better when higher, the time modes when lower.
+            boolean higherIsBetter = "thrpt".equals(now.get("mode").getAsString());
+            double slowdown = higherIsBetter ? -change : change;
+            boolean regressed = slowdown > threshold + errorPercent(before) + errorPercent(now);
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-60s %14s %14s %+7.1f%% %14s %14s%s%n", entry.getKey(),
+                    format(score(before), unit), format(score, unit), change,
+                    allocation(before), allocation(now), regressed ? "  REGRESSION" : "");
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-60s %14s %14s %8s%n", key, "", "-", "missing");
+            }
+        }
+        System.out.println(regressions + " regression(s) beyond " + threshold + "% plus score error");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    // Results keyed by benchmark name, mode and parameters.
+    private static Map<String, JsonObject> load(String file) throws IOException {
+        Map<String, JsonObject> results = new LinkedHashMap<String, JsonObject>();
+        try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            JsonArray array = JsonParser.parseReader(reader).getAsJsonArray();
+            for (JsonElement element : array) {
+                JsonObject result = element.getAsJsonObject();
+                results.put(key(result), result);
+            }
+        }
+        return results;
+    }
+
+    private static String key(JsonObject result) {
+        String benchmark = result.get("benchmark").getAsString();
+        StringBuilder key = new StringBuilder(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+        key.append(' ').append(result.get("mode").getAsString());
+        if (result.has("params")) {
+            Map<String, String> params = new TreeMap<String, String>();
+            for (Map.Entry<String, JsonElement> param : result.getAsJsonObject("params").entrySet()) {
+                params.put(param.getKey(), param.getValue().getAsString());
+            }
+            key.append(' ').append(params);
+        }
+        return key.toString();
+    }
+
+    private static double score(JsonObject result) {
+        return result.getAsJsonObject("primaryMetric").get("score").getAsDouble();
+    }
+
+    // Score error (99.9% confidence) as percent of the score.
+    private static double errorPercent(JsonObject result) {
+        JsonObject metric = result.getAsJsonObject("primaryMetric");
+        JsonElement error = metric.get("scoreError");
+        double score = metric.get("score").getAsDouble();
+        if (error == null || !error.isJsonPrimitive() || score == 0) {
+            return 0;
+        }
+        double value = error.getAsDouble();
+        return Double.isNaN(value) ? 0 : 100.0 * value / score;
+    }
+
+    private static String allocation(JsonObject result) {
+        JsonObject secondary = result.getAsJsonObject("secondaryMetrics");
+        if (secondary == null || !secondary.has(ALLOCATION)) {
+            return "-";
+        }
+        return String.format("%.1f", secondary.getAsJsonObject(ALLOCATION).get("score").getAsDouble());
+    }
+
+    private static String format(double score, String unit) {
+        return String.format("%.3f %s", score, unit);
+    }
+}
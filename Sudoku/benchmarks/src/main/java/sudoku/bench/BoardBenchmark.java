@@ -0,0 +1,52 @@
+/**
+ *
+ * @author jithu
+ */
+package sudoku.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The board helpers of the generator: createBoard shuffling a solved
+// board in place and copyOf copying a board.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    @Param({"6", "9", "12", "16"})
+    public int grid;
+    private Object sudoku;
+    private int[][] board;
+
+    @Setup
+    public void setUp() throws Throwable {
+        sudoku = Game.newSudoku(new SplittableRandom(42));
+        board = Game.solvedBoard(sudoku, grid);
+    }
+
+    // Shuffling keeps the board solved, so it is shuffled again each time.
+    @Benchmark
+    public int[][] createBoard() throws Throwable {
+        return Game.createBoard(sudoku, board);
+    }
+
+    @Benchmark
+    public int[][] copyOf() throws Throwable {
+        return Game.copyOf(sudoku, board);
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ *
+ * @author jithu
+ */
+package sudoku.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.SplittableRandom;
+
+// The game classes live in the default package, which cannot be imported
+// from a named package. They are looked up once by name and called through
+// method handles held in static finals, which the JIT inlines like direct
+// calls. Private helpers such as createBoard are reached the same way.
+final class Game {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Class<?> SUDOKU = load("Sudoku");
+    private static final Class<?> GEOMETRY = load("BoardGeometry");
+    private static final Class<?> BOARD_BATCH = load("BoardBatch");
+    private static final MethodHandle NEW_SUDOKU = constructor(SUDOKU, SplittableRandom.class);
+    private static final MethodHandle GET_NEW_PUZZLE = method(SUDOKU, "getNewPuzzle", int.class, int.class);
+    private static final MethodHandle CHECK = method(SUDOKU, "check", int[][].class);
+    private static final MethodHandle CREATE_BOARD = method(SUDOKU, "createBoard", int[][].class);
+    private static final MethodHandle COPY_OF = method(SUDOKU, "copyOf", int[][].class);
+    private static final MethodHandle GEOMETRY_OF = method(GEOMETRY, "of", int.class);
+    private static final MethodHandle CREATE_SOLVED_BOARD = method(GEOMETRY, "createSolvedBoard");
+    private static final MethodHandle NEW_BOARD_BATCH = constructor(BOARD_BATCH, int.class, int.class);
+    private static final MethodHandle ADD = method(BOARD_BATCH, "add", int[][].class);
+    private static final MethodHandle FIND_INVALID = method(BOARD_BATCH, "findInvalid", long[].class);
+
+    private Game() {
+    }
+
+    static Object newSudoku(SplittableRandom random) throws Throwable {
+        return (Object) NEW_SUDOKU.invokeExact(random);
+    }
+
+    static int[][] getNewPuzzle(Object sudoku, int grid, int gameMode) throws Throwable {
+        return (int[][]) (Object) GET_NEW_PUZZLE.invokeExact(sudoku, grid, gameMode);
+    }
+
+    static boolean check(Object sudoku, int[][] board) throws Throwable {
+        return (boolean) CHECK.invokeExact(sudoku, (Object) board);
+    }
+
+    static Object newBoardBatch(int grid, int capacity) throws Throwable {
+        return (Object) NEW_BOARD_BATCH.invokeExact(grid, capacity);
+    }
+
+    static int add(Object batch, int[][] board) throws Throwable {
+        return (int) ADD.invokeExact(batch, (Object) board);
+    }
+
+    static long[] findInvalid(Object batch, long[] invalid) throws Throwable {
+        return (long[]) (Object) FIND_INVALID.invokeExact(batch, (Object) invalid);
+    }
+
+    // Shuffles the board in place and returns it.
+    static int[][] createBoard(Object sudoku, int[][] board) throws Throwable {
+        return (int[][]) (Object) CREATE_BOARD.invokeExact(sudoku, (Object) board);
+    }
+
+    static int[][] copyOf(Object sudoku, int[][] board) throws Throwable {
+        return (int[][]) (Object) COPY_OF.invokeExact(sudoku, (Object) board);
+    }
+
+    // A shuffled solved board of the grid size.
+    static int[][] solvedBoard(Object sudoku, int grid) throws Throwable {
+        Object geometry = (Object) GEOMETRY_OF.invokeExact(grid);
+        int[][] board = (int[][]) (Object) CREATE_SOLVED_BOARD.invokeExact(geometry);
+        return createBoard(sudoku, board);
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Game class " + name + " is missing", e);
+        }
+    }
+
+    // Handles are adapted to Object receivers and arguments so they can be
+    // called with invokeExact from code that cannot name the game classes.
+    private static MethodHandle constructor(Class<?> type, Class<?>... parameters) {
+        try {
+            MethodHandle handle = LOOKUP.unreflectConstructor(type.getConstructor(parameters));
+            return handle.asType(handle.type().changeReturnType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No constructor on " + type.getName(), e);
+        }
+    }
+
+    private static MethodHandle method(Class<?> type, String name, Class<?>... parameters) {
+        try {
+            Method method = type.getDeclaredMethod(name, parameters);
+            method.setAccessible(true);
+            MethodHandle handle = LOOKUP.unreflect(method);
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No method " + name + " on " + type.getName(), e);
+        }
+    }
+
+    private static MethodType erase(MethodType type) {
+        MethodType erased = type;
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (!type.parameterType(i).isPrimitive()) {
+                erased = erased.changeParameterType(i, Object.class);
+            }
+        }
+        if (!type.returnType().isPrimitive()) {
+            erased = erased.changeReturnType(Object.class);
+        }
+        return erased;
+    }
+}
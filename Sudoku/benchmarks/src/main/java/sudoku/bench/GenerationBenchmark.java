@@ -0,0 +1,47 @@
+/**
+ *
+ * @author jithu
+ */
+package sudoku.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Sudoku.getNewPuzzle for every grid size and game mode. No pool or bank
+// is set, so every call generates a puzzle.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerationBenchmark {
+
+    @Param({"6", "9", "12", "16"})
+    public int grid;
+    // Easy, medium and expert.
+    @Param({"50", "60", "75"})
+    public int gameMode;
+    private Object sudoku;
+
+    @Setup
+    public void setUp() throws Throwable {
+        sudoku = Game.newSudoku(new SplittableRandom(42));
+    }
+
+    @Benchmark
+    public int[][] getNewPuzzle() throws Throwable {
+        return Game.getNewPuzzle(sudoku, grid, gameMode);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ *
+ * @author jithu
+ */
+package sudoku.bench;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Sudoku.check on a solved board and on one that only fails late, and the
+// same boards checked by a BoardBatch, whose score is per board as well.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+
+    // Boards of the batch, a multiple of the 64 checked at once.
+    private static final int BATCH = 1024;
+    @Param({"6", "9", "12", "16"})
+    public int grid;
+    // An invalid board has two cells of its last row swapped, the rows
+    // still pass and the columns catch it.
+    @Param({"true", "false"})
+    public boolean valid;
+    private Object sudoku;
+    private int[][] board;
+    private Object batch;
+    private final long[] invalid = new long[BATCH / 64];
+
+    @Setup
+    public void setUp() throws Throwable {
+        sudoku = Game.newSudoku(new SplittableRandom(42));
+        board = Game.solvedBoard(sudoku, grid);
+        if (!valid) {
+            swapLastRow(board);
+        }
+        if (Game.check(sudoku, board) != valid) {
+            throw new IllegalStateException("Board is not " + (valid ? "valid" : "invalid"));
+        }
+        batch = Game.newBoardBatch(grid, BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            int[][] other = Game.solvedBoard(sudoku, grid);
+            if (!valid) {
+                swapLastRow(other);
+            }
+            Game.add(batch, other);
+        }
+        Game.findInvalid(batch, invalid);
+        for (long word : invalid) {
+            if (word != (valid ? 0 : -1L)) {
+                throw new IllegalStateException("Batch does not agree with check");
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean check() throws Throwable {
+        return Game.check(sudoku, board);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long[] checkBatch() throws Throwable {
+        return Game.findInvalid(batch, invalid);
+    }
+
+    private static void swapLastRow(int[][] board) {
+        int[] last = board[board.length - 1];
+        int temp = last[0];
+        last[0] = last[last.length - 1];
+        last[last.length - 1] = temp;
+    }
+}
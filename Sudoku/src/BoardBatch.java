@@ -0,0 +1,287 @@
+/**
+ *
+ * @author jithu
+ */
+// Completed boards of one size packed to be checked many at a time. The
+// layout is struct of arrays: a long lane per row of a board holding its
+// digits minus one in 4-bit nibbles, column 0 lowest, and the lanes of a
+// row of all boards next to each other,
+//   lanes[row * capacity + board]
+// so grids up to 16x16 fit. findInvalid takes 64 boards at a time and
+// transposes their lanes of a row as a 64x64 bit matrix, which gives bit
+// planes: word 4 * col + k holds bit k of the cell's nibble for each of
+// the 64 boards. Which boards have digit d in a cell is then an AND of two
+// plane decodes, ORed into the digits seen by its row, column and box,
+// and every unit missing a digit marks its boards in the result. No
+// branch depends on a digit and nothing is allocated, so boards that pass
+// cost several times less than with SudokuValidator, which still names
+// the bad unit of a board and checks 25x25 boards.
+public final class BoardBatch {
+
+    public static final int MAX_GRID = 16;
+    // Boards checked at once, one bit each in a word of the result.
+    private static final int WORD = 64;
+    // Masks of the last two transpose rounds.
+    private static final long PAIRS = 0x3333333333333333L;
+    private static final long BITS = 0x5555555555555555L;
+    private final BoardGeometry geometry;
+    private final int size;
+    private final int capacity;
+    private final long[] lanes;
+    // Boards with a digit out of range or rows of another length, they
+    // fail without being looked at.
+    private final long[] rejected;
+    private int count;
+    // Digits are decoded four at a time, size rounded up.
+    private final int digits;
+    // Transposed lanes of one row, then the boards that have each digit
+    // in every column and box, digits of them per unit.
+    private final long[] planes = new long[WORD];
+    private final long[] columnSeen;
+    private final long[] boxSeen;
+
+    // Room for capacity boards, rounded up to a multiple of 64.
+    public BoardBatch(int grid, int capacity) {
+        if (grid > MAX_GRID) {
+            throw new IllegalArgumentException("A " + grid + "x" + grid + " board does not fit 4-bit digits");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity " + capacity);
+        }
+        geometry = BoardGeometry.of(grid);
+        size = grid;
+        this.capacity = (capacity + WORD - 1) & -WORD;
+        lanes = new long[size * this.capacity];
+        rejected = new long[this.capacity / WORD];
+        digits = (size + 3) & -4;
+        columnSeen = new long[size * digits];
+        boxSeen = new long[size * digits];
+    }
+
+    public static boolean isSupported(int grid) {
+        return grid <= MAX_GRID && BoardGeometry.isSupported(grid);
+    }
+
+    // Append a board, returns its index.
+    public int add(int[][] board) {
+        int index = next();
+        boolean ok = board.length == size;
+        for (int i = 0; i < size && ok; i++) {
+            ok = board[i].length == size && pack(index, i, board[i], 0);
+        }
+        return added(index, ok);
+    }
+
+    // Append a board given as cell digits row by row, returns its index.
+    public int add(int[] cells) {
+        int index = next();
+        boolean ok = cells.length >= size * size;
+        for (int i = 0; i < size && ok; i++) {
+            ok = pack(index, i, cells, i * size);
+        }
+        return added(index, ok);
+    }
+
+    public void clear() {
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = 0;
+        }
+        count = 0;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return count == capacity;
+    }
+
+    // Boards that are not solved correctly by the rules of
+    // SudokuValidator.findInvalidUnit, board b is bit b % 64 of word b / 64.
+    public long[] findInvalid() {
+        return findInvalid(new long[(count + WORD - 1) / WORD]);
+    }
+
+    // Same into a given bitset with at least a word per 64 boards.
+    public long[] findInvalid(long[] invalid) {
+        for (int word = 0; word * WORD < count; word++) {
+            int boards = Math.min(WORD, count - word * WORD);
+            long present = boards == WORD ? -1L : (1L << boards) - 1;
+            invalid[word] = (findInvalid(word * WORD) | rejected[word]) & present;
+        }
+        return invalid;
+    }
+
+    private int next() {
+        if (count == capacity) {
+            throw new IllegalStateException("Batch of " + capacity + " boards is full");
+        }
+        return count;
+    }
+
+    private int added(int index, boolean ok) {
+        if (!ok) {
+            rejected[index / WORD] |= 1L << index;
+        }
+        count++;
+        return index;
+    }
+
+    // Pack row i from digits[from..from+size), false if a digit is out of range.
+    private boolean pack(int index, int i, int[] digits, int from) {
+        long lane = 0;
+        for (int j = 0; j < size; j++) {
+            int digit = digits[from + j];
+            if (digit < 1 || digit > size) {
+                return false;
+            }
+            lane |= (long) (digit - 1) << (4 * j);
+        }
+        lanes[i * capacity + index] = lane;
+        return true;
+    }
+
+    // Bitset of the 64 boards from first with a unit missing a digit.
+    private long findInvalid(int first) {
+        int boxRows = geometry.getBoxRows();
+        int boxCols = geometry.getBoxCols();
+        int[] cellBox = geometry.getCellBoxes();
+        long missing = 0;
+        clear(columnSeen);
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(lanes, i * capacity + first, planes, 0, WORD);
+            transpose(planes);
+            // Four digits at a time, rows and the part of a box in this
+            // row are kept in registers. Digits beyond size count as seen.
+            for (int d = 0; d < size; d += 4) {
+                if (size - d == 1) {
+                    // A lone last digit only needs its row, see below.
+                    // Nibbles are below size, the top bit tells it.
+                    long row = 0;
+                    for (int j = 0; j < size; j++) {
+                        row |= planes[4 * j + 3];
+                    }
+                    missing |= ~row;
+                    break;
+                }
+                long row0 = d < size ? 0 : -1L;
+                long row1 = d + 1 < size ? 0 : -1L;
+                long row2 = d + 2 < size ? 0 : -1L;
+                long row3 = d + 3 < size ? 0 : -1L;
+                for (int from = 0; from < size; from += boxCols) {
+                    long box0 = 0;
+                    long box1 = 0;
+                    long box2 = 0;
+                    long box3 = 0;
+                    for (int j = from; j < from + boxCols; j++) {
+                        long bit0 = planes[4 * j];
+                        long bit1 = planes[4 * j + 1];
+                        long high = (d & 8) != 0 ? planes[4 * j + 3] : ~planes[4 * j + 3];
+                        high &= (d & 4) != 0 ? planes[4 * j + 2] : ~planes[4 * j + 2];
+                        // Boards with digit d + k in this cell.
+                        long is0 = high & ~bit1 & ~bit0;
+                        long is1 = high & ~bit1 & bit0;
+                        long is2 = high & bit1 & ~bit0;
+                        long is3 = high & bit1 & bit0;
+                        row0 |= is0;
+                        row1 |= is1;
+                        row2 |= is2;
+                        row3 |= is3;
+                        box0 |= is0;
+                        box1 |= is1;
+                        box2 |= is2;
+                        box3 |= is3;
+                        int column = j * digits + d;
+                        columnSeen[column] |= is0;
+                        columnSeen[column + 1] |= is1;
+                        columnSeen[column + 2] |= is2;
+                        columnSeen[column + 3] |= is3;
+                    }
+                    int box = cellBox[i * size + from] * digits + d;
+                    if (i % boxRows != 0) {
+                        box0 |= boxSeen[box];
+                        box1 |= boxSeen[box + 1];
+                        box2 |= boxSeen[box + 2];
+                        box3 |= boxSeen[box + 3];
+                    }
+                    boxSeen[box] = box0;
+                    boxSeen[box + 1] = box1;
+                    boxSeen[box + 2] = box2;
+                    boxSeen[box + 3] = box3;
+                }
+                missing |= ~(row0 & row1 & row2 & row3);
+            }
+        }
+        // Once every row has every digit, each digit is on the board size
+        // times, and a column or box without the last one would have to
+        // hold another one twice. So the last digit is only looked for in
+        // the rows.
+        for (int unit = 0; unit < size; unit++) {
+            for (int d = unit * digits; d < unit * digits + size - 1; d++) {
+                missing |= ~columnSeen[d] | ~boxSeen[d];
+            }
+        }
+        return missing;
+    }
+
+    // Transpose a 64x64 bit matrix in place, bit j of word i swaps with
+    // bit i of word j. Blocks of half the size swap each round, the last
+    // two rounds on four words at a time in registers.
+    private static void transpose(long[] matrix) {
+        swap(matrix, 32, 0x00000000FFFFFFFFL);
+        swap(matrix, 16, 0x0000FFFF0000FFFFL);
+        swap(matrix, 8, 0x00FF00FF00FF00FFL);
+        swap(matrix, 4, 0x0F0F0F0F0F0F0F0FL);
+        for (int k = 0; k < WORD; k += 4) {
+            long a = matrix[k];
+            long b = matrix[k + 1];
+            long c = matrix[k + 2];
+            long d = matrix[k + 3];
+            long swap = (a >>> 2 ^ c) & PAIRS;
+            a ^= swap << 2;
+            c ^= swap;
+            swap = (b >>> 2 ^ d) & PAIRS;
+            b ^= swap << 2;
+            d ^= swap;
+            swap = (a >>> 1 ^ b) & BITS;
+            a ^= swap << 1;
+            b ^= swap;
+            swap = (c >>> 1 ^ d) & BITS;
+            c ^= swap << 1;
+            d ^= swap;
+            matrix[k] = a;
+            matrix[k + 1] = b;
+            matrix[k + 2] = c;
+            matrix[k + 3] = d;
+        }
+    }
+
+    // Swap the high half bits of the first words of every 2 * half block
+    // with the low half bits of the second ones.
+    private static void swap(long[] matrix, int half, long mask) {
+        for (int from = 0; from < WORD; from += 2 * half) {
+            for (int k = from; k < from + half; k++) {
+                long low = matrix[k];
+                long high = matrix[k + half];
+                long swap = (low >>> half ^ high) & mask;
+                matrix[k] = low ^ swap << half;
+                matrix[k + half] = high ^ swap;
+            }
+        }
+    }
+
+    private static void clear(long[] words) {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ *
+ * @author jithu
+ */
+// Shape of a board: size x size cells split into boxes of boxRows x
+// boxCols. The index tables are built once per shape and shared by every
+// solver, rater, validator and view, so hot loops look cells up instead
+// of computing box boundaries. The arrays returned by the getters are the
+// shared tables themselves and must not be modified.
+//
+// Cells are numbered row by row, units are rows 0..size-1, then columns,
+// then boxes. Boxes are numbered row by row as well.
+public final class BoardGeometry {
+
+    public static final BoardGeometry GRID_4X4 = new BoardGeometry(2, 2);
+    public static final BoardGeometry GRID_6X6 = new BoardGeometry(2, 3);
+    public static final BoardGeometry GRID_9X9 = new BoardGeometry(3, 3);
+    public static final BoardGeometry GRID_12X12 = new BoardGeometry(3, 4);
+    public static final BoardGeometry GRID_16X16 = new BoardGeometry(4, 4);
+    public static final BoardGeometry GRID_25X25 = new BoardGeometry(5, 5);
+    private static final BoardGeometry[] SHAPES = {
+        GRID_4X4, GRID_6X6, GRID_9X9, GRID_12X12, GRID_16X16, GRID_25X25};
+    private final int size;
+    private final int boxRows;
+    private final int boxCols;
+    private final int cellCount;
+    private final int numOfPeers;
+    private final int[] cellRow;
+    private final int[] cellCol;
+    private final int[] cellBox;
+    // units[u * size + k] is the k-th cell of unit u.
+    private final int[] units;
+    // peers[cell * numOfPeers + k] is the k-th cell sharing a unit with
+    // cell, in ascending order.
+    private final int[] peers;
+
+    private BoardGeometry(int boxRows, int boxCols) {
+        this.boxRows = boxRows;
+        this.boxCols = boxCols;
+        size = boxRows * boxCols;
+        cellCount = size * size;
+
+        cellRow = new int[cellCount];
+        cellCol = new int[cellCount];
+        cellBox = new int[cellCount];
+        units = new int[3 * cellCount];
+        int[] filled = new int[3 * size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int cell = i * size + j;
+                int box = (i / boxRows) * boxRows + j / boxCols;
+                cellRow[cell] = i;
+                cellCol[cell] = j;
+                cellBox[cell] = box;
+                units[i * size + filled[i]++] = cell;
+                units[(size + j) * size + filled[size + j]++] = cell;
+                units[(2 * size + box) * size + filled[2 * size + box]++] = cell;
+            }
+        }
+
+        // Row and column peers plus the box cells outside both.
+        numOfPeers = 2 * (size - 1) + (boxRows - 1) * (boxCols - 1);
+        peers = new int[cellCount * numOfPeers];
+        for (int cell = 0; cell < cellCount; cell++) {
+            int k = cell * numOfPeers;
+            for (int other = 0; other < cellCount; other++) {
+                if (other != cell && (cellRow[other] == cellRow[cell]
+                        || cellCol[other] == cellCol[cell] || cellBox[other] == cellBox[cell])) {
+                    peers[k++] = other;
+                }
+            }
+        }
+    }
+
+    // Geometry of a supported grid size, see SHAPES.
+    public static BoardGeometry of(int size) {
+        for (BoardGeometry geometry : SHAPES) {
+            if (geometry.size == size) {
+                return geometry;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported grid " + size);
+    }
+
+    public static boolean isSupported(int size) {
+        for (BoardGeometry geometry : SHAPES) {
+            if (geometry.size == size) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getBoxRows() {
+        return boxRows;
+    }
+
+    public int getBoxCols() {
+        return boxCols;
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public int getNumOfUnits() {
+        return 3 * size;
+    }
+
+    public int getNumOfPeers() {
+        return numOfPeers;
+    }
+
+    public int getBox(int row, int col) {
+        return cellBox[row * size + col];
+    }
+
+    // Box shading for views, neighbouring boxes never share a shade.
+    public boolean isShadedBox(int box) {
+        return (box / boxRows + box % boxRows) % 2 == 1;
+    }
+
+    public int[] getCellRows() {
+        return cellRow;
+    }
+
+    public int[] getCellColumns() {
+        return cellCol;
+    }
+
+    public int[] getCellBoxes() {
+        return cellBox;
+    }
+
+    public int[] getUnits() {
+        return units;
+    }
+
+    public int[] getPeers() {
+        return peers;
+    }
+
+    // A solved board built from a pattern, every row is the one above
+    // shifted by a box width, every band by one more.
+    public int[][] createSolvedBoard() {
+        int[][] board = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                board[i][j] = (boxCols * (i % boxRows) + i / boxRows + j) % size + 1;
+            }
+        }
+        return board;
+    }
+
+    @Override
+    public String toString() {
+        return size + "x" + size;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.Arrays;
+
+// A game in progress: the puzzle's given cells and the player's entries,
+// kept in a BoardState. Listeners hear about every changed cell and every
+// newly loaded board, on the thread that made the change; the model is
+// not thread safe. Nothing here depends on Swing, the same model runs a
+// game in the window, in tests or behind a server session.
+public class BoardModel {
+
+    // Called after the model changed.
+    public interface BoardListener {
+
+        // A new puzzle was loaded, every cell may have changed.
+        void boardLoaded(BoardModel model);
+
+        // One entry changed, digits are 0 for an empty cell.
+        void cellChanged(BoardModel model, int row, int col, int oldDigit, int newDigit);
+    }
+    private static final BoardListener[] NO_LISTENERS = new BoardListener[0];
+    private final int size;
+    private final BoardState state;
+    private final boolean[] given;
+    // Copied on change, events go to the listeners there were when the
+    // change happened.
+    private BoardListener[] listeners = NO_LISTENERS;
+
+    public BoardModel(int grid) {
+        size = grid;
+        state = new BoardState(grid);
+        given = new boolean[grid * grid];
+    }
+
+    public BoardModel(int[][] puzzle) {
+        this(puzzle.length);
+        load(puzzle);
+    }
+
+    public void addBoardListener(BoardListener listener) {
+        BoardListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    public void removeBoardListener(BoardListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                BoardListener[] shrunk = new BoardListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, shrunk, 0, i);
+                System.arraycopy(listeners, i + 1, shrunk, i, shrunk.length - i);
+                listeners = shrunk;
+                return;
+            }
+        }
+    }
+
+    // Start a new puzzle, its filled cells become the givens.
+    public void load(int[][] puzzle) {
+        if (puzzle.length != size) {
+            throw new IllegalArgumentException("A " + size + "x" + size + " board can not load a " + puzzle.length + " grid");
+        }
+        state.load(puzzle);
+        for (int cell = 0; cell < given.length; cell++) {
+            given[cell] = puzzle[cell / size][cell % size] != 0;
+        }
+        for (BoardListener listener : listeners) {
+            listener.boardLoaded(this);
+        }
+    }
+
+    // Put a digit in a cell, 0 clears it. Returns false if the cell
+    // already had that digit.
+    public boolean set(int row, int col, int digit) {
+        if (given[row * size + col]) {
+            throw new IllegalArgumentException("Cell " + (row + 1) + "," + (col + 1) + " is given");
+        }
+        int old = state.get(row, col);
+        if (old == digit) {
+            return false;
+        }
+        state.set(row, col, digit);
+        for (BoardListener listener : listeners) {
+            listener.cellChanged(this, row, col, old, digit);
+        }
+        return true;
+    }
+
+    // Clear every entry, the givens stay.
+    public void clearEntries() {
+        for (int cell = 0; cell < given.length; cell++) {
+            if (!given[cell] && state.get(cell / size, cell % size) != 0) {
+                set(cell / size, cell % size, 0);
+            }
+        }
+    }
+
+    public int get(int row, int col) {
+        return state.get(row, col);
+    }
+
+    public boolean isGiven(int row, int col) {
+        return given[row * size + col];
+    }
+
+    public boolean isConflicting(int row, int col) {
+        return state.isConflicting(row, col);
+    }
+
+    public boolean isComplete() {
+        return state.isComplete();
+    }
+
+    public boolean isSolved() {
+        return state.isSolved();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public BoardGeometry getGeometry() {
+        return state.getGeometry();
+    }
+
+    // The givens alone, the puzzle as it was loaded.
+    public int[][] getPuzzle() {
+        int[][] puzzle = new int[size][size];
+        for (int cell = 0; cell < given.length; cell++) {
+            if (given[cell]) {
+                puzzle[cell / size][cell % size] = state.get(cell / size, cell % size);
+            }
+        }
+        return puzzle;
+    }
+
+    public int[][] toArray() {
+        return state.toArray();
+    }
+
+    // All digits row by row, for restore.
+    public int[] snapshot() {
+        int[] cells = new int[size * size];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = state.get(cell / size, cell % size);
+        }
+        return cells;
+    }
+
+    // Go back to a snapshot of the same puzzle. Only the entries that
+    // differ change, each with its own event.
+    public void restore(int[] snapshot) {
+        if (snapshot.length != given.length) {
+            throw new IllegalArgumentException("Snapshot of " + snapshot.length + " cells for a " + size + "x" + size + " board");
+        }
+        for (int cell = 0; cell < given.length; cell++) {
+            if (given[cell] && snapshot[cell] != state.get(cell / size, cell % size)) {
+                throw new IllegalArgumentException("Snapshot is of another puzzle");
+            }
+        }
+        for (int cell = 0; cell < given.length; cell++) {
+            if (!given[cell]) {
+                set(cell / size, cell % size, snapshot[cell]);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.Arrays;
+
+public class BoardState {
+
+    private final int size;
+    private final int cellCount;
+    private final BoardGeometry geometry;
+    private final int[] cellBox;
+    private final int[] cells;
+    // counts[unit * (size + 1) + digit] is how often digit appears in unit.
+    // Units 0..size-1 are rows, then columns, then boxes.
+    private final int[] counts;
+    // Digits present in every unit as bitmask (bit d-1 for digit d).
+    private final int[] unitMasks;
+    private int filledCount;
+    // Number of (unit, digit) pairs where the digit appears more than once.
+    private int duplicateCount;
+
+    public BoardState(int grid) {
+        size = grid;
+        cellCount = grid * grid;
+        geometry = BoardGeometry.of(grid);
+        cellBox = geometry.getCellBoxes();
+        cells = new int[cellCount];
+        counts = new int[3 * grid * (grid + 1)];
+        unitMasks = new int[3 * grid];
+    }
+
+    public BoardState(int[][] board) {
+        this(board.length);
+        load(board);
+    }
+
+    // Replace the whole board.
+    public void load(int[][] board) {
+        Arrays.fill(cells, 0);
+        Arrays.fill(counts, 0);
+        Arrays.fill(unitMasks, 0);
+        filledCount = 0;
+        duplicateCount = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                set(i, j, board[i][j]);
+            }
+        }
+    }
+
+    // Put a digit in a cell, 0 clears it. Runs in constant time.
+    public void set(int row, int col, int digit) {
+        if (digit < 0 || digit > size) {
+            throw new IllegalArgumentException("Invalid digit " + digit + " for grid " + size);
+        }
+        int cell = row * size + col;
+        int old = cells[cell];
+        if (old == digit) {
+            return;
+        }
+        if (old != 0) {
+            remove(row, col, old);
+            filledCount--;
+        }
+        cells[cell] = digit;
+        if (digit != 0) {
+            add(row, col, digit);
+            filledCount++;
+        }
+    }
+
+    public int get(int row, int col) {
+        return cells[row * size + col];
+    }
+
+    // True if the digit in the cell also appears in its row, column or box.
+    public boolean isConflicting(int row, int col) {
+        int digit = cells[row * size + col];
+        if (digit == 0) {
+            return false;
+        }
+        return counts[row * (size + 1) + digit] > 1
+                || counts[(size + col) * (size + 1) + digit] > 1
+                || counts[(2 * size + getBox(row, col)) * (size + 1) + digit] > 1;
+    }
+
+    public boolean isComplete() {
+        return filledCount == cellCount;
+    }
+
+    public boolean hasConflicts() {
+        return duplicateCount != 0;
+    }
+
+    // Complete board with every digit once per row, column and box.
+    public boolean isSolved() {
+        return filledCount == cellCount && duplicateCount == 0;
+    }
+
+    public int getRowMask(int row) {
+        return unitMasks[row];
+    }
+
+    public int getColumnMask(int col) {
+        return unitMasks[size + col];
+    }
+
+    public int getBoxMask(int box) {
+        return unitMasks[2 * size + box];
+    }
+
+    public int getBox(int row, int col) {
+        return cellBox[row * size + col];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public BoardGeometry getGeometry() {
+        return geometry;
+    }
+
+    public int[][] toArray() {
+        int[][] board = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(cells, i * size, board[i], 0, size);
+        }
+        return board;
+    }
+
+    private void add(int row, int col, int digit) {
+        increment(row, digit);
+        increment(size + col, digit);
+        increment(2 * size + getBox(row, col), digit);
+    }
+
+    private void remove(int row, int col, int digit) {
+        decrement(row, digit);
+        decrement(size + col, digit);
+        decrement(2 * size + getBox(row, col), digit);
+    }
+
+    private void increment(int unit, int digit) {
+        int count = ++counts[unit * (size + 1) + digit];
+        if (count == 1) {
+            unitMasks[unit] |= 1 << (digit - 1);
+        } else if (count == 2) {
+            duplicateCount++;
+        }
+    }
+
+    private void decrement(int unit, int digit) {
+        int count = --counts[unit * (size + 1) + digit];
+        if (count == 0) {
+            unitMasks[unit] &= ~(1 << (digit - 1));
+        } else if (count == 1) {
+            duplicateCount--;
+        }
+    }
+}
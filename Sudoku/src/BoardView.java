@@ -0,0 +1,407 @@
+/**
+ *
+ * @author jithu
+ */
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import javax.swing.JComponent;
+
+// The whole board as one painted component. Cells are laid out like the
+// old grid of buttons, shaded box by box. Clicking an empty cell opens a
+// digit picker inside it, laid out like a box, and a click on a digit
+// puts it in. The keyboard works too: arrows move, 1-9 and A.. type a
+// digit, Delete or Backspace clears, Enter opens and Escape closes the
+// picker. Pencil marks from a CandidateEngine can be shown in the empty
+// cells. The view renders a BoardModel and repaints only the cells a
+// change in it can have recolored.
+public class BoardView extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+    private static final int GAP = 3;
+    private static final Color CELL_COLOR = new Color(255, 255, 255);
+    private static final Color SHADED_COLOR = new Color(204, 204, 204);
+    private static final Color BORDER_COLOR = new Color(153, 153, 153);
+    private static final Color SELECTED_COLOR = new Color(51, 102, 204);
+    private static final Color PICKER_COLOR = new Color(238, 238, 238);
+    private static final Color CANDIDATE_COLOR = new Color(119, 119, 119);
+    private static final Color CONFLICT_COLOR = new Color(204, 0, 0);
+    private static final Color TEXT_COLOR = new Color(51, 51, 51);
+    private static final Font BASE_FONT = new Font("Tahoma", Font.PLAIN, 12);
+    private BoardModel model;
+    private CandidateEngine candidates;
+    private boolean showCandidates;
+    private BoardGeometry geometry;
+    private int grid;
+    private int selected = -1;
+    private boolean pickerOpen;
+    private final BoardModel.BoardListener listener = new BoardModel.BoardListener() {
+
+        public void boardLoaded(BoardModel model) {
+            geometry = model.getGeometry();
+            grid = model.getSize();
+            selected = -1;
+            pickerOpen = false;
+            repaint();
+        }
+
+        public void cellChanged(BoardModel model, int row, int col, int oldDigit, int newDigit) {
+            repaintChange(row, col, oldDigit, newDigit);
+        }
+    };
+    // Layout for the current size, see layoutCells.
+    private int layoutWidth = -1;
+    private int layoutHeight = -1;
+    private int layoutGrid;
+    private int originX;
+    private int originY;
+    private int cellSize;
+    private int pitch;
+    private Font givenFont;
+    private Font enteredFont;
+    private Font pickerFont;
+    private FontMetrics givenMetrics;
+    private FontMetrics enteredMetrics;
+    private FontMetrics pickerMetrics;
+    private final char[] text = new char[2];
+    private final Rectangle bounds = new Rectangle();
+
+    public BoardView() {
+        setOpaque(true);
+        setBackground(CELL_COLOR);
+        setFocusable(true);
+        setPreferredSize(new Dimension(100, 100));
+        addMouseListener(new MouseAdapter() {
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                click(e.getX(), e.getY());
+            }
+        });
+        addKeyListener(new KeyAdapter() {
+
+            @Override
+            public void keyPressed(KeyEvent e) {
+                key(e);
+            }
+        });
+    }
+
+    // Show a model and follow its changes.
+    public void setModel(BoardModel model) {
+        if (this.model != null) {
+            this.model.removeBoardListener(listener);
+            candidates.detach();
+        }
+        this.model = model;
+        candidates = new CandidateEngine(model);
+        model.addBoardListener(listener);
+        listener.boardLoaded(model);
+    }
+
+    public BoardModel getModel() {
+        return model;
+    }
+
+    public CandidateEngine getCandidates() {
+        return candidates;
+    }
+
+    // Pencil marks in the empty cells.
+    public void setShowCandidates(boolean showCandidates) {
+        this.showCandidates = showCandidates;
+        repaint();
+    }
+
+    public boolean isShowCandidates() {
+        return showCandidates;
+    }
+
+    // Put a digit in a cell, 0 clears it. Given cells are left alone.
+    public void setDigit(int cell, int digit) {
+        if (model.isGiven(cell / grid, cell % grid) || digit < 0 || digit > grid) {
+            return;
+        }
+        model.set(cell / grid, cell % grid, digit);
+    }
+
+    // Repaint the changed cell and the peers holding its old or new
+    // digit, no other cell can have changed its conflict color. With
+    // pencil marks the empty peers may have gained or lost one too.
+    private void repaintChange(int row, int col, int oldDigit, int newDigit) {
+        int cell = row * grid + col;
+        repaintCell(cell);
+        int[] peers = geometry.getPeers();
+        int numOfPeers = geometry.getNumOfPeers();
+        for (int k = cell * numOfPeers; k < (cell + 1) * numOfPeers; k++) {
+            int digit = model.get(peers[k] / grid, peers[k] % grid);
+            if (digit == 0 ? showCandidates : digit == oldDigit || digit == newDigit) {
+                repaintCell(peers[k]);
+            }
+        }
+    }
+
+    public int getSelectedCell() {
+        return selected;
+    }
+
+    public void select(int cell, boolean openPicker) {
+        if (cell != selected) {
+            if (selected >= 0) {
+                repaintCell(selected);
+            }
+            selected = cell;
+        }
+        pickerOpen = openPicker && cell >= 0 && !model.isGiven(cell / grid, cell % grid);
+        if (cell >= 0) {
+            repaintCell(cell);
+        }
+    }
+
+    private void click(int x, int y) {
+        if (model == null) {
+            return;
+        }
+        layoutCells();
+        int cell = cellAt(x, y);
+        if (cell < 0) {
+            return;
+        }
+        if (cell == selected && pickerOpen) {
+            int digit = pickerDigitAt(cell, x, y);
+            if (digit > 0) {
+                setDigit(cell, digit);
+                select(cell, false);
+            }
+            return;
+        }
+        select(cell, true);
+    }
+
+    private void key(KeyEvent e) {
+        if (model == null) {
+            return;
+        }
+        int code = e.getKeyCode();
+        if (selected < 0) {
+            if (code == KeyEvent.VK_UP || code == KeyEvent.VK_DOWN
+                    || code == KeyEvent.VK_LEFT || code == KeyEvent.VK_RIGHT) {
+                select(0, false);
+            }
+            return;
+        }
+        int row = selected / grid;
+        int col = selected % grid;
+        switch (code) {
+            case KeyEvent.VK_UP:
+                select(((row + grid - 1) % grid) * grid + col, false);
+                return;
+            case KeyEvent.VK_DOWN:
+                select(((row + 1) % grid) * grid + col, false);
+                return;
+            case KeyEvent.VK_LEFT:
+                select(row * grid + (col + grid - 1) % grid, false);
+                return;
+            case KeyEvent.VK_RIGHT:
+                select(row * grid + (col + 1) % grid, false);
+                return;
+            case KeyEvent.VK_ENTER:
+            case KeyEvent.VK_SPACE:
+                select(selected, true);
+                return;
+            case KeyEvent.VK_ESCAPE:
+                select(selected, false);
+                return;
+            case KeyEvent.VK_DELETE:
+            case KeyEvent.VK_BACK_SPACE:
+                setDigit(selected, 0);
+                select(selected, false);
+                return;
+            default:
+        }
+        int digit = PuzzleFormat.toDigit(e.getKeyChar());
+        if (digit >= 0 && digit <= grid) {
+            setDigit(selected, digit);
+            select(selected, false);
+        }
+    }
+
+    // Cell under a point, -1 for the gaps and outside the board.
+    private int cellAt(int x, int y) {
+        int dx = x - originX;
+        int dy = y - originY;
+        if (dx < 0 || dy < 0) {
+            return -1;
+        }
+        int col = dx / pitch;
+        int row = dy / pitch;
+        if (row >= grid || col >= grid || dx % pitch >= cellSize || dy % pitch >= cellSize) {
+            return -1;
+        }
+        return row * grid + col;
+    }
+
+    private int pickerDigitAt(int cell, int x, int y) {
+        int boxRows = geometry.getBoxRows();
+        int boxCols = geometry.getBoxCols();
+        int pickerRow = (y - cellY(cell)) * boxRows / cellSize;
+        int pickerCol = (x - cellX(cell)) * boxCols / cellSize;
+        if (pickerRow < 0 || pickerRow >= boxRows || pickerCol < 0 || pickerCol >= boxCols) {
+            return 0;
+        }
+        return pickerRow * boxCols + pickerCol + 1;
+    }
+
+    private int cellX(int cell) {
+        return originX + (cell % grid) * pitch;
+    }
+
+    private int cellY(int cell) {
+        return originY + (cell / grid) * pitch;
+    }
+
+    private void repaintCell(int cell) {
+        layoutCells();
+        repaint(cellX(cell), cellY(cell), cellSize, cellSize);
+    }
+
+    // Square cells centered in the component. Fonts follow the cell size
+    // and are only derived again when it changes.
+    private void layoutCells() {
+        if (layoutWidth == getWidth() && layoutHeight == getHeight() && layoutGrid == grid) {
+            return;
+        }
+        layoutWidth = getWidth();
+        layoutHeight = getHeight();
+        layoutGrid = grid;
+        int side = Math.min(layoutWidth, layoutHeight);
+        pitch = Math.max(GAP + 1, (side + GAP) / grid);
+        int newCellSize = pitch - GAP;
+        originX = (layoutWidth - (grid * pitch - GAP)) / 2;
+        originY = (layoutHeight - (grid * pitch - GAP)) / 2;
+        if (newCellSize != cellSize || givenFont == null) {
+            cellSize = newCellSize;
+            float size = Math.max(6, cellSize * 0.55f);
+            givenFont = BASE_FONT.deriveFont(Font.PLAIN, size);
+            enteredFont = BASE_FONT.deriveFont(Font.BOLD, size);
+            int pickerCell = cellSize / Math.max(geometry.getBoxRows(), geometry.getBoxCols());
+            pickerFont = BASE_FONT.deriveFont(Font.PLAIN, Math.max(6, pickerCell * 0.7f));
+            givenMetrics = getFontMetrics(givenFont);
+            enteredMetrics = getFontMetrics(enteredFont);
+            pickerMetrics = getFontMetrics(pickerFont);
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(getBackground());
+        if (g.getClip() == null) {
+            bounds.setBounds(0, 0, getWidth(), getHeight());
+        } else {
+            g.getClipBounds(bounds);
+        }
+        g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+        if (model == null) {
+            return;
+        }
+        layoutCells();
+        ((Graphics2D) g).setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        // Only the cells inside the clip.
+        int firstCol = Math.max(0, (bounds.x - originX) / pitch);
+        int lastCol = Math.min(grid - 1, (bounds.x + bounds.width - originX) / pitch);
+        int firstRow = Math.max(0, (bounds.y - originY) / pitch);
+        int lastRow = Math.min(grid - 1, (bounds.y + bounds.height - originY) / pitch);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                paintCell(g, row * grid + col);
+            }
+        }
+    }
+
+    private void paintCell(Graphics g, int cell) {
+        int x = cellX(cell);
+        int y = cellY(cell);
+        int row = cell / grid;
+        int col = cell % grid;
+        boolean shaded = geometry.isShadedBox(geometry.getBox(row, col));
+        g.setColor(shaded ? SHADED_COLOR : CELL_COLOR);
+        g.fillRect(x, y, cellSize, cellSize);
+        if (cell == selected && pickerOpen) {
+            paintPicker(g, x, y);
+        } else {
+            int digit = model.get(row, col);
+            if (digit != 0) {
+                boolean isGiven = model.isGiven(row, col);
+                g.setFont(isGiven ? givenFont : enteredFont);
+                g.setColor(!isGiven && model.isConflicting(row, col) ? CONFLICT_COLOR : TEXT_COLOR);
+                drawDigit(g, digit, isGiven ? givenMetrics : enteredMetrics, x, y, cellSize, cellSize);
+            } else if (showCandidates) {
+                paintCandidates(g, x, y, candidates.getCandidates(row, col));
+            }
+        }
+        g.setColor(cell == selected ? SELECTED_COLOR : BORDER_COLOR);
+        g.drawRect(x, y, cellSize - 1, cellSize - 1);
+        if (cell == selected) {
+            g.drawRect(x + 1, y + 1, cellSize - 3, cellSize - 3);
+        }
+    }
+
+    private void paintPicker(Graphics g, int x, int y) {
+        g.setColor(PICKER_COLOR);
+        g.fillRect(x, y, cellSize, cellSize);
+        g.setColor(TEXT_COLOR);
+        paintDigits(g, x, y, (1 << grid) - 1);
+    }
+
+    // Candidates sit where the picker has the same digits.
+    private void paintCandidates(Graphics g, int x, int y, int mask) {
+        g.setColor(CANDIDATE_COLOR);
+        paintDigits(g, x, y, mask);
+    }
+
+    // The digits of a mask in small print, laid out like a box.
+    private void paintDigits(Graphics g, int x, int y, int mask) {
+        int boxRows = geometry.getBoxRows();
+        int boxCols = geometry.getBoxCols();
+        g.setFont(pickerFont);
+        for (int digit = 1; digit <= grid; digit++) {
+            if ((mask & 1 << (digit - 1)) == 0) {
+                continue;
+            }
+            int r = (digit - 1) / boxCols;
+            int c = (digit - 1) % boxCols;
+            int left = x + c * cellSize / boxCols;
+            int top = y + r * cellSize / boxRows;
+            int width = x + (c + 1) * cellSize / boxCols - left;
+            int height = y + (r + 1) * cellSize / boxRows - top;
+            drawDigit(g, digit, pickerMetrics, left, top, width, height);
+        }
+    }
+
+    // Centered digit, written into a reused buffer.
+    private void drawDigit(Graphics g, int digit, FontMetrics metrics, int x, int y, int width, int height) {
+        int length;
+        if (digit < 10) {
+            text[0] = (char) ('0' + digit);
+            length = 1;
+        } else {
+            text[0] = (char) ('0' + digit / 10);
+            text[1] = (char) ('0' + digit % 10);
+            length = 2;
+        }
+        int textX = x + (width - metrics.charsWidth(text, 0, length)) / 2;
+        int textY = y + (height - metrics.getHeight()) / 2 + metrics.getAscent();
+        g.drawChars(text, 0, length, textX, textY);
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.Arrays;
+
+// Pencil marks of a BoardModel, kept up to date move by move. For every
+// cell and digit it counts the peers holding that digit; the digit is a
+// candidate while the count is zero. Placing a digit raises the counts of
+// the cell's peers, clearing lowers them again, so a removal is undone
+// exactly even when another peer still holds the digit. A move costs
+// one step per peer, a query is a table read.
+public class CandidateEngine {
+
+    private final BoardModel model;
+    private final BoardGeometry geometry;
+    private final int size;
+    private final int allDigits;
+    private final int[] peers;
+    private final int numOfPeers;
+    // peerCounts[cell * (size + 1) + digit] is how many peers of the cell
+    // hold digit.
+    private final int[] peerCounts;
+    // Digits no peer holds, bit d-1 for digit d, whether or not the cell
+    // itself is filled.
+    private final int[] masks;
+    private final BoardModel.BoardListener listener = new BoardModel.BoardListener() {
+
+        public void boardLoaded(BoardModel model) {
+            rebuild();
+        }
+
+        public void cellChanged(BoardModel model, int row, int col, int oldDigit, int newDigit) {
+            int cell = row * size + col;
+            if (oldDigit != 0) {
+                remove(cell, oldDigit);
+            }
+            if (newDigit != 0) {
+                place(cell, newDigit);
+            }
+        }
+    };
+
+    // Follow a model until detach is called.
+    public CandidateEngine(BoardModel model) {
+        this.model = model;
+        geometry = model.getGeometry();
+        size = model.getSize();
+        allDigits = (1 << size) - 1;
+        peers = geometry.getPeers();
+        numOfPeers = geometry.getNumOfPeers();
+        peerCounts = new int[size * size * (size + 1)];
+        masks = new int[size * size];
+        rebuild();
+        model.addBoardListener(listener);
+    }
+
+    public void detach() {
+        model.removeBoardListener(listener);
+    }
+
+    // Candidates of an empty cell as a bitmask, 0 for a filled one.
+    public int getCandidates(int row, int col) {
+        return model.get(row, col) == 0 ? masks[row * size + col] : 0;
+    }
+
+    public boolean isCandidate(int row, int col, int digit) {
+        return (getCandidates(row, col) & 1 << (digit - 1)) != 0;
+    }
+
+    public int getCandidateCount(int row, int col) {
+        return Integer.bitCount(getCandidates(row, col));
+    }
+
+    // First empty cell with one candidate left, row by row, or -1. The
+    // digit is the one in getCandidates. Meant for hints.
+    public int findNakedSingle() {
+        for (int cell = 0; cell < masks.length; cell++) {
+            int mask = masks[cell];
+            if (mask != 0 && (mask & (mask - 1)) == 0 && model.get(cell / size, cell % size) == 0) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    // Count again from the board, after a new puzzle was loaded.
+    private void rebuild() {
+        Arrays.fill(peerCounts, 0);
+        Arrays.fill(masks, allDigits);
+        for (int cell = 0; cell < masks.length; cell++) {
+            int digit = model.get(cell / size, cell % size);
+            if (digit != 0) {
+                place(cell, digit);
+            }
+        }
+    }
+
+    private void place(int cell, int digit) {
+        int bit = 1 << (digit - 1);
+        for (int k = cell * numOfPeers; k < (cell + 1) * numOfPeers; k++) {
+            int peer = peers[k];
+            if (peerCounts[peer * (size + 1) + digit]++ == 0) {
+                masks[peer] &= ~bit;
+            }
+        }
+    }
+
+    private void remove(int cell, int digit) {
+        int bit = 1 << (digit - 1);
+        for (int k = cell * numOfPeers; k < (cell + 1) * numOfPeers; k++) {
+            int peer = peers[k];
+            if (--peerCounts[peer * (size + 1) + digit] == 0) {
+                masks[peer] |= bit;
+            }
+        }
+    }
+}
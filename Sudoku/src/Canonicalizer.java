@@ -0,0 +1,914 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.Arrays;
+
+// Maps a board to the smallest board it can be turned into, read row by
+// row, so boards that are the same puzzle up to symmetry get the same
+// form. The symmetries are: reordering bands and the rows inside each
+// band, reordering stacks and the columns inside each stack, transposing
+// (only when boxes are square) and relabeling digits. Empty cells stay 0
+// and sort first, so a puzzle's form starts with as many empty cells as
+// it can. Boards must not repeat a digit in a row or column.
+//
+// The search builds the form cell by cell and drops a partial form as
+// soon as it is worse than the best one found. The first row decides
+// little: stacks with more empty cells in it come first and inside a
+// stack its empty columns come first, its filled columns taking the next
+// labels whatever their order. Which stack and which column goes where
+// is left open until a later row tells them apart, and at every cell
+// only the choices giving the smallest value are tried. Before a row is
+// tried it is read ahead as far as its values are forced, rows losing
+// there to another row or to the best form are dropped.
+//
+// An instance keeps its scratch tables and is not thread safe.
+public class Canonicalizer {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    // Mixed into column counts when rows and columns can not be swapped.
+    private static final int COLUMN_TAG = 1 << 24;
+    // What commit did besides a column placed at a position.
+    private static final int NOTHING = -1;
+    private static final int NEW_LABEL = -2;
+    private final int size;
+    private final int cellCount;
+    private final int boxRows;
+    private final int boxCols;
+    private final int numOfStacks;
+    private final int numOfBands;
+    // The board in each orientation, row by row.
+    private final int[][] orientations;
+    private int[] board;
+    private final int[] rowMasks;
+    private final int[] colMasks;
+    // Filled cells of every row, column, box, band, stack, row part in a
+    // stack and column part in a band, for fingerprints.
+    private final int[] rowCounts;
+    private final int[] colCounts;
+    private final int[] boxCounts;
+    private final int[] bandCounts;
+    private final int[] stackCounts;
+    private final int[] rowPartCounts;
+    private final int[] colPartCounts;
+    private final int[] digitCounts;
+    private final long[] digitHashes;
+    private final long[] rowPartHashes;
+    private final long[] colPartHashes;
+    private final int[] firstRowKeys;
+    // Column of every digit in the first row, -1 if it is not there.
+    private final int[] firstRowColumns;
+    // Source row of every output row.
+    private final int[] rowMap;
+    private int usedRows;
+    // Source stack of every output stack and the other way round, -1
+    // while open. Stacks with as many empty cells in the first row form a
+    // stack group, free to take any of the group's output stacks.
+    private final int[] stackMap;
+    private final int[] slotOfStack;
+    private final int[] stackEmpties;
+    private final int[] stackGroupOfSlot;
+    private final int[] stackGroupOfStack;
+    private final int[] stackGroupStacks;
+    private final int[] stackGroupSlots;
+    private final int[] stackGroupEmpties;
+    // Source column of every output column, -1 while open. Once its stack
+    // is placed a column is in a group, first the empty and the filled
+    // columns of the stack, split further as rows tell them apart. A
+    // group holds the columns not placed yet and the positions still free
+    // for them.
+    private final int[] colMap;
+    private final int[] groupOfPosition;
+    private final int[] groupOfColumn;
+    private final int[] groupColumns;
+    private final int[] groupPositions;
+    private int numOfGroups;
+    // Label of a filled position of the first row.
+    private final int[] positionLabels;
+    // Label of every digit, 0 while it has none.
+    private final int[] labels;
+    private int nextLabel;
+    private final int[] out;
+    private final int[] best;
+    private boolean hasBest;
+    // Raised whenever best changes.
+    private int version;
+    // Previews of the rows tried at every output row, by source row.
+    private final int[][] rowValues;
+    private final int[][] previewLengths;
+    private final int[][] rowCandidates;
+    // Digits of a row placed whole and what placing them committed.
+    private final int[][] rowDigits;
+    private final int[][] rowCommits;
+    // What a preview took, valid where the stamp is current.
+    private int stamp;
+    private int previewLabel;
+    private boolean previewForced;
+    private boolean previewBlocked;
+    private final int[] labelStamps;
+    private final int[] previewLabels;
+    private final int[] positionStamps;
+    private final int[] previewColumns;
+    private final int[] groupStamps;
+    private final int[] previewGroupColumns;
+    private final int[] previewGroupPositions;
+
+    public Canonicalizer(int grid) {
+        this(BoardGeometry.of(grid));
+    }
+
+    public Canonicalizer(BoardGeometry geometry) {
+        size = geometry.getSize();
+        cellCount = size * size;
+        boxRows = geometry.getBoxRows();
+        boxCols = geometry.getBoxCols();
+        numOfStacks = size / boxCols;
+        numOfBands = size / boxRows;
+        orientations = new int[boxRows == boxCols ? 2 : 1][cellCount];
+        rowMasks = new int[size];
+        colMasks = new int[size];
+        rowCounts = new int[size];
+        colCounts = new int[size];
+        boxCounts = new int[size];
+        bandCounts = new int[numOfBands];
+        stackCounts = new int[numOfStacks];
+        rowPartCounts = new int[size * numOfStacks];
+        colPartCounts = new int[size * numOfBands];
+        digitCounts = new int[size + 1];
+        digitHashes = new long[size + 1];
+        rowPartHashes = new long[size * numOfStacks];
+        colPartHashes = new long[size * numOfBands];
+        firstRowKeys = new int[orientations.length * size];
+        firstRowColumns = new int[size + 1];
+        rowMap = new int[size];
+        stackMap = new int[numOfStacks];
+        slotOfStack = new int[numOfStacks];
+        stackEmpties = new int[numOfStacks];
+        stackGroupOfSlot = new int[numOfStacks];
+        stackGroupOfStack = new int[numOfStacks];
+        stackGroupStacks = new int[numOfStacks];
+        stackGroupSlots = new int[numOfStacks];
+        stackGroupEmpties = new int[numOfStacks];
+        colMap = new int[size];
+        groupOfPosition = new int[size];
+        groupOfColumn = new int[size];
+        // Two groups a stack and at most one split off a column.
+        groupColumns = new int[2 * numOfStacks + size];
+        groupPositions = new int[2 * numOfStacks + size];
+        positionLabels = new int[size];
+        labels = new int[size + 1];
+        out = new int[cellCount];
+        best = new int[cellCount];
+        rowValues = new int[size][cellCount];
+        previewLengths = new int[size][size];
+        rowCandidates = new int[size][size];
+        rowDigits = new int[size][size];
+        rowCommits = new int[size][size];
+        labelStamps = new int[size + 1];
+        previewLabels = new int[size + 1];
+        positionStamps = new int[size];
+        previewColumns = new int[size];
+        groupStamps = new int[groupColumns.length];
+        previewGroupColumns = new int[groupColumns.length];
+        previewGroupPositions = new int[groupColumns.length];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // Canonical form of a board, digits relabeled from 1 in reading order.
+    public int[][] canonicalForm(int[][] board) {
+        canonicalize(board);
+        int[][] form = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(best, i * size, form[i], 0, size);
+        }
+        return form;
+    }
+
+    // Canonical form as a PuzzleFormat line, equal for equivalent boards
+    // and only for them.
+    public String key(int[][] board) {
+        canonicalize(board);
+        char[] line = new char[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            line[cell] = PuzzleFormat.toChar(best[cell]);
+        }
+        return new String(line);
+    }
+
+    // 64 bit FNV-1a hash of the canonical form, for compact sets where a
+    // collision once in about 2^32 distinct boards is acceptable.
+    public long hash(int[][] board) {
+        canonicalize(board);
+        long hash = FNV_OFFSET;
+        for (int cell = 0; cell < cellCount; cell++) {
+            hash = (hash ^ best[cell]) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    // Cheap 64 bit fingerprint, the same for equivalent boards. Boards with
+    // different fingerprints are not equivalent, boards with the same one
+    // most likely are, only then is the canonical form worth its cost.
+    // Every cell is hashed with how full its lines, line parts, band,
+    // stack and box are and how often its digit is given; cells are summed
+    // per digit and digits summed, so no order is involved.
+    public long fingerprint(int[][] board) {
+        if (board.length != size) {
+            throw new IllegalArgumentException("Expected a " + size + "x" + size + " board, got " + board.length);
+        }
+        Arrays.fill(rowCounts, 0);
+        Arrays.fill(colCounts, 0);
+        Arrays.fill(boxCounts, 0);
+        Arrays.fill(bandCounts, 0);
+        Arrays.fill(stackCounts, 0);
+        Arrays.fill(rowPartCounts, 0);
+        Arrays.fill(colPartCounts, 0);
+        Arrays.fill(digitCounts, 0);
+        Arrays.fill(digitHashes, 0);
+        Arrays.fill(rowMasks, 0);
+        Arrays.fill(colMasks, 0);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int digit = board[i][j];
+                if (digit < 0 || digit > size) {
+                    throw new IllegalArgumentException("Invalid digit " + digit);
+                }
+                digitCounts[digit]++;
+                if (digit != 0) {
+                    int bit = 1 << (digit - 1);
+                    if ((rowMasks[i] & bit) != 0 || (colMasks[j] & bit) != 0) {
+                        throw new IllegalArgumentException("Digit " + digit + " repeats at " + (i + 1) + "," + (j + 1));
+                    }
+                    rowMasks[i] |= bit;
+                    colMasks[j] |= bit;
+                    int band = i / boxRows;
+                    int stack = j / boxCols;
+                    rowCounts[i]++;
+                    colCounts[j]++;
+                    boxCounts[band * numOfStacks + stack]++;
+                    bandCounts[band]++;
+                    stackCounts[stack]++;
+                    rowPartCounts[i * numOfStacks + stack]++;
+                    colPartCounts[j * numOfBands + band]++;
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            for (int stack = 0; stack < numOfStacks; stack++) {
+                rowPartHashes[i * numOfStacks + stack] = mix(rowCounts[i] << 16
+                        | rowPartCounts[i * numOfStacks + stack] << 8 | bandCounts[i / boxRows]);
+            }
+        }
+        int columnTag = orientations.length > 1 ? 0 : COLUMN_TAG;
+        for (int j = 0; j < size; j++) {
+            for (int band = 0; band < numOfBands; band++) {
+                colPartHashes[j * numOfBands + band] = mix(columnTag | colCounts[j] << 16
+                        | colPartCounts[j * numOfBands + band] << 8 | stackCounts[j / boxCols]);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            int band = i / boxRows;
+            for (int j = 0; j < size; j++) {
+                int digit = board[i][j];
+                int stack = j / boxCols;
+                digitHashes[digit] += mix(rowPartHashes[i * numOfStacks + stack] + colPartHashes[j * numOfBands + band]
+                        + ((long) boxCounts[band * numOfStacks + stack] << 40 | (long) digitCounts[digit] << 48));
+            }
+        }
+        long fingerprint = mix(digitHashes[0]);
+        for (int digit = 1; digit <= size; digit++) {
+            fingerprint += mix(digitHashes[digit] + FNV_OFFSET);
+        }
+        return fingerprint;
+    }
+
+    // SplitMix64 finalizer.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private void canonicalize(int[][] board) {
+        if (board.length != size) {
+            throw new IllegalArgumentException("Expected a " + size + "x" + size + " board, got " + board.length);
+        }
+        Arrays.fill(rowMasks, 0);
+        Arrays.fill(colMasks, 0);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int digit = board[i][j];
+                if (digit < 0 || digit > size) {
+                    throw new IllegalArgumentException("Invalid digit " + digit);
+                }
+                if (digit != 0) {
+                    int bit = 1 << (digit - 1);
+                    if ((rowMasks[i] & bit) != 0 || (colMasks[j] & bit) != 0) {
+                        throw new IllegalArgumentException("Digit " + digit + " repeats at " + (i + 1) + "," + (j + 1));
+                    }
+                    rowMasks[i] |= bit;
+                    colMasks[j] |= bit;
+                }
+                orientations[0][i * size + j] = digit;
+                if (orientations.length > 1) {
+                    orientations[1][j * size + i] = digit;
+                }
+            }
+        }
+        // The first row reads its stacks' empty cells, most first, so only
+        // rows with the largest such counts can start the form.
+        int most = 0;
+        for (int t = 0; t < orientations.length; t++) {
+            for (int row = 0; row < size; row++) {
+                firstRowKeys[t * size + row] = firstRowKey(orientations[t], row);
+                most = Math.max(most, firstRowKeys[t * size + row]);
+            }
+        }
+        hasBest = false;
+        Arrays.fill(labels, 0);
+        Arrays.fill(colMap, -1);
+        for (int t = 0; t < orientations.length; t++) {
+            this.board = orientations[t];
+            for (int row = 0; row < size; row++) {
+                if (firstRowKeys[t * size + row] == most) {
+                    placeFirstRow(row);
+                    placeCell(size, hasBest);
+                }
+            }
+        }
+    }
+
+    // Empty cells of every stack in a row, sorted down and read as digits
+    // of a number.
+    private int firstRowKey(int[] orientation, int row) {
+        countEmpties(orientation, row);
+        // Few stacks, sort them by insertion.
+        int[] empties = stackGroupEmpties;
+        for (int s = 0; s < numOfStacks; s++) {
+            int count = stackEmpties[s];
+            int at = s;
+            for (; at > 0 && empties[at - 1] < count; at--) {
+                empties[at] = empties[at - 1];
+            }
+            empties[at] = count;
+        }
+        int key = 0;
+        for (int s = 0; s < numOfStacks; s++) {
+            key = key * (boxCols + 1) + empties[s];
+        }
+        return key;
+    }
+
+    private void countEmpties(int[] orientation, int row) {
+        for (int s = 0; s < numOfStacks; s++) {
+            stackEmpties[s] = 0;
+            for (int c = s * boxCols; c < (s + 1) * boxCols; c++) {
+                if (orientation[row * size + c] == 0) {
+                    stackEmpties[s]++;
+                }
+            }
+        }
+    }
+
+    // Start a form with the given first row. Its values follow from the
+    // empty counts alone, the stacks with one count make a stack group.
+    private void placeFirstRow(int row) {
+        rowMap[0] = row;
+        usedRows = 1 << row;
+        Arrays.fill(firstRowColumns, -1);
+        for (int c = 0; c < size; c++) {
+            int digit = board[row * size + c];
+            if (digit != 0) {
+                firstRowColumns[digit] = c;
+            }
+        }
+        countEmpties(board, row);
+        Arrays.fill(stackMap, -1);
+        Arrays.fill(slotOfStack, -1);
+        nextLabel = 1;
+        int slot = 0;
+        int numOfStackGroups = 0;
+        for (int empties = boxCols; empties >= 0; empties--) {
+            int stacks = 0;
+            for (int s = 0; s < numOfStacks; s++) {
+                if (stackEmpties[s] == empties) {
+                    stacks |= 1 << s;
+                    stackGroupOfStack[s] = numOfStackGroups;
+                }
+            }
+            if (stacks == 0) {
+                continue;
+            }
+            int group = numOfStackGroups++;
+            stackGroupStacks[group] = stacks;
+            stackGroupSlots[group] = 0;
+            stackGroupEmpties[group] = empties;
+            for (int k = Integer.bitCount(stacks); k > 0; k--, slot++) {
+                stackGroupOfSlot[slot] = group;
+                stackGroupSlots[group] |= 1 << slot;
+                int start = slot * boxCols;
+                int emptyPositions = ((1 << empties) - 1) << start;
+                groupPositions[2 * slot] = emptyPositions;
+                groupPositions[2 * slot + 1] = ((1 << boxCols) - 1) << start & ~emptyPositions;
+                for (int j = start; j < start + boxCols; j++) {
+                    boolean empty = j < start + empties;
+                    groupOfPosition[j] = empty ? 2 * slot : 2 * slot + 1;
+                    positionLabels[j] = empty ? 0 : nextLabel++;
+                    out[j] = positionLabels[j];
+                }
+            }
+            if (Integer.bitCount(stacks) == 1) {
+                // Nothing to choose.
+                assignStack(Integer.numberOfTrailingZeros(stacks), slot - 1);
+            }
+        }
+        numOfGroups = 2 * numOfStacks;
+    }
+
+    // Put source stack s at output stack slot, its columns fall in the
+    // slot's empty and filled groups.
+    private void assignStack(int s, int slot) {
+        int group = stackGroupOfSlot[slot];
+        stackMap[slot] = s;
+        slotOfStack[s] = slot;
+        stackGroupStacks[group] &= ~(1 << s);
+        stackGroupSlots[group] &= ~(1 << slot);
+        int rowStart = rowMap[0] * size;
+        int emptyColumns = 0;
+        int filledColumns = 0;
+        for (int c = s * boxCols; c < (s + 1) * boxCols; c++) {
+            if (board[rowStart + c] == 0) {
+                emptyColumns |= 1 << c;
+                groupOfColumn[c] = 2 * slot;
+            } else {
+                filledColumns |= 1 << c;
+                groupOfColumn[c] = 2 * slot + 1;
+            }
+        }
+        groupColumns[2 * slot] = emptyColumns;
+        groupColumns[2 * slot + 1] = filledColumns;
+    }
+
+    private void unassignStack(int s, int slot) {
+        int group = stackGroupOfSlot[slot];
+        stackMap[slot] = -1;
+        slotOfStack[s] = -1;
+        stackGroupStacks[group] |= 1 << s;
+        stackGroupSlots[group] |= 1 << slot;
+    }
+
+    // Fill the cell at pos of a later row, choosing its row first when
+    // the row starts.
+    private void placeCell(int pos, boolean tight) {
+        if (pos == cellCount) {
+            System.arraycopy(out, 0, best, 0, cellCount);
+            hasBest = true;
+            version++;
+            return;
+        }
+        int i = pos / size;
+        if (pos % size != 0) {
+            fillCell(pos, tight);
+            return;
+        }
+        int first;
+        int last;
+        if (i % boxRows == 0) {
+            first = 0;
+            last = size;
+        } else {
+            first = rowMap[i - 1] / boxRows * boxRows;
+            last = first + boxRows;
+        }
+        // Read every allowed row ahead as far as its values are forced. A
+        // row beaten there by another row or by the best form is dropped,
+        // the others are tried best first.
+        int bandMask = (1 << boxRows) - 1;
+        int[] values = rowValues[i];
+        int[] lengths = previewLengths[i];
+        int[] candidates = rowCandidates[i];
+        int numOfCandidates = 0;
+        int forced = 0;
+        for (int r = first; r < last; r++) {
+            if ((usedRows & 1 << r) != 0
+                    || i % boxRows == 0 && (usedRows & bandMask << (r / boxRows * boxRows)) != 0) {
+                continue;
+            }
+            int length = preview(r, values, r * size, tight ? pos : -1);
+            if (length >= 0) {
+                lengths[r] = length;
+                candidates[numOfCandidates++] = r;
+                if (previewForced) {
+                    forced |= 1 << r;
+                }
+            }
+        }
+        int kept = 0;
+        for (int k = 0; k < numOfCandidates; k++) {
+            int r = candidates[k];
+            boolean beaten = false;
+            for (int other = 0; other < numOfCandidates && !beaten; other++) {
+                int o = candidates[other];
+                beaten = compare(values, r * size, values, o * size, Math.min(lengths[r], lengths[o])) > 0;
+            }
+            if (beaten) {
+                continue;
+            }
+            // Insertion sort, the row with the smaller preview goes first.
+            int at = kept++;
+            while (at > 0 && compare(values, r * size, values, candidates[at - 1] * size,
+                    Math.min(lengths[r], lengths[candidates[at - 1]])) < 0) {
+                candidates[at] = candidates[at - 1];
+                at--;
+            }
+            candidates[at] = r;
+        }
+        int seen = version;
+        for (int k = 0; k < kept; k++) {
+            int r = candidates[k];
+            rowMap[i] = r;
+            usedRows |= 1 << r;
+            if ((forced & 1 << r) != 0) {
+                placeRow(pos, tight && compare(values, r * size, best, pos, size) == 0);
+            } else {
+                fillCell(pos, tight);
+            }
+            usedRows &= ~(1 << r);
+            if (version != seen) {
+                // The new best starts like this form.
+                seen = version;
+                tight = true;
+            }
+        }
+    }
+
+    // Fill a whole row whose preview was forced all the way.
+    private void placeRow(int pos, boolean tight) {
+        int i = pos / size;
+        int rowStart = rowMap[i] * size;
+        int[] digits = rowDigits[i];
+        int[] committed = rowCommits[i];
+        for (int j = 0; j < size; j++) {
+            int c = colMap[j];
+            digits[j] = c < 0 ? 0 : board[rowStart + c];
+            committed[j] = commit(digits[j]);
+        }
+        System.arraycopy(rowValues[i], rowMap[i] * size, out, pos, size);
+        placeCell(pos + size, tight);
+        for (int j = size - 1; j >= 0; j--) {
+            undo(digits[j], committed[j]);
+        }
+    }
+
+    // Values row r would give as the next row, as far as they are forced:
+    // through placed columns, open columns all empty in the row, and the
+    // first open column left, where it gives the smallest value of its
+    // group. It stops at an open stack. Returns how many values were
+    // written, previewForced tells if the whole row was forced. Labels and
+    // positions it would take are kept in stamped scratch tables. With a
+    // bound, the position of the row in best, returns -1 as soon as the
+    // row is worse than best.
+    private int preview(int r, int[] values, int offset, int bound) {
+        stamp++;
+        previewForced = false;
+        previewBlocked = false;
+        previewLabel = nextLabel;
+        int rowStart = r * size;
+        for (int j = 0; j < size; j++) {
+            int c = colMap[j];
+            if (c < 0 && positionStamps[j] == stamp) {
+                c = previewColumns[j];
+            }
+            int value;
+            boolean open = false;
+            if (c >= 0) {
+                value = previewValue(board[rowStart + c], true, 0);
+            } else if (stackMap[j / boxCols] < 0) {
+                return j;
+            } else {
+                int group = groupOfPosition[j];
+                int columns = groupColumns[group];
+                if (groupStamps[group] == stamp) {
+                    columns &= ~previewGroupColumns[group];
+                }
+                value = Integer.MAX_VALUE;
+                for (; columns != 0; columns &= columns - 1) {
+                    int digit = board[rowStart + Integer.numberOfTrailingZeros(columns)];
+                    value = Math.min(value, previewValue(digit, false, 1 << j));
+                    open |= digit != 0;
+                }
+            }
+            values[offset + j] = value;
+            if (bound >= 0 && value != best[bound + j]) {
+                if (value > best[bound + j]) {
+                    return -1;
+                }
+                bound = -1;
+            }
+            if (open || previewBlocked) {
+                return j + 1;
+            }
+        }
+        previewForced = true;
+        return size;
+    }
+
+    // valueOf for a preview, take says the value is used so a new label or
+    // a place for an open first row column is taken. A digit whose stack
+    // is open blocks the preview after its value.
+    private int previewValue(int digit, boolean take, int taken) {
+        if (digit == 0) {
+            return 0;
+        }
+        if (labels[digit] != 0) {
+            return labels[digit];
+        }
+        if (labelStamps[digit] == stamp) {
+            return previewLabels[digit];
+        }
+        int value;
+        int c = firstRowColumns[digit];
+        if (c < 0) {
+            value = previewLabel;
+            if (take) {
+                previewLabel++;
+            }
+        } else if (slotOfStack[c / boxCols] < 0) {
+            previewBlocked |= take;
+            return valueOf(digit, taken);
+        } else {
+            int group = groupOfColumn[c];
+            int free = groupPositions[group] & ~taken;
+            if (groupStamps[group] == stamp) {
+                free &= ~previewGroupPositions[group];
+            }
+            int position = Integer.numberOfTrailingZeros(free);
+            value = positionLabels[position];
+            if (take) {
+                if (groupStamps[group] != stamp) {
+                    groupStamps[group] = stamp;
+                    previewGroupColumns[group] = 0;
+                    previewGroupPositions[group] = 0;
+                }
+                previewGroupColumns[group] |= 1 << c;
+                previewGroupPositions[group] |= 1 << position;
+                positionStamps[position] = stamp;
+                previewColumns[position] = c;
+            }
+        }
+        if (take) {
+            labelStamps[digit] = stamp;
+            previewLabels[digit] = value;
+        }
+        return value;
+    }
+
+    private int compare(int[] a, int aOffset, int[] b, int bOffset, int length) {
+        for (int j = 0; j < length; j++) {
+            int difference = a[aOffset + j] - b[bOffset + j];
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    private void fillCell(int pos, boolean tight) {
+        int j = pos % size;
+        int rowStart = rowMap[pos / size] * size;
+        int c = colMap[j];
+        if (c >= 0) {
+            int digit = board[rowStart + c];
+            int value = valueOf(digit, 0);
+            if (tight && value > best[pos]) {
+                return;
+            }
+            int committed = commit(digit);
+            out[pos] = value;
+            placeCell(pos + 1, tight && value == best[pos]);
+            undo(digit, committed);
+            return;
+        }
+        int slot = j / boxCols;
+        if (stackMap[slot] >= 0) {
+            fillOpenCell(pos, tight);
+            return;
+        }
+        // The stack is open too and j starts it. Try the stacks of its
+        // group giving the smallest value here.
+        int group = stackGroupOfSlot[slot];
+        int min = Integer.MAX_VALUE;
+        for (int stacks = stackGroupStacks[group]; stacks != 0; stacks &= stacks - 1) {
+            int s = Integer.numberOfTrailingZeros(stacks);
+            assignStack(s, slot);
+            min = Math.min(min, openValue(rowStart, j));
+            unassignStack(s, slot);
+        }
+        if (tight && min > best[pos]) {
+            return;
+        }
+        int seen = version;
+        for (int stacks = stackGroupStacks[group]; stacks != 0; stacks &= stacks - 1) {
+            int s = Integer.numberOfTrailingZeros(stacks);
+            assignStack(s, slot);
+            if (openValue(rowStart, j) == min) {
+                fillOpenCell(pos, tight);
+            }
+            unassignStack(s, slot);
+            if (version != seen) {
+                seen = version;
+                tight = true;
+            }
+        }
+    }
+
+    // Smallest value the open column at j can have.
+    private int openValue(int rowStart, int j) {
+        int min = Integer.MAX_VALUE;
+        for (int columns = groupColumns[groupOfPosition[j]]; columns != 0; columns &= columns - 1) {
+            min = Math.min(min, valueOf(board[rowStart + Integer.numberOfTrailingZeros(columns)], 1 << j));
+        }
+        return min;
+    }
+
+    // Fill a cell whose stack is placed but whose column is open.
+    private void fillOpenCell(int pos, boolean tight) {
+        int j = pos % size;
+        int rowStart = rowMap[pos / size] * size;
+        // Columns of the group empty in this row come first in any order,
+        // they stay open as a group of their own.
+        int group = groupOfPosition[j];
+        int empty = 0;
+        for (int columns = groupColumns[group]; columns != 0; columns &= columns - 1) {
+            int c = Integer.numberOfTrailingZeros(columns);
+            if (board[rowStart + c] == 0) {
+                empty |= 1 << c;
+            }
+        }
+        if (empty == groupColumns[group] || Integer.bitCount(empty) > 1) {
+            int split = empty == groupColumns[group] ? -1 : split(group, empty);
+            out[pos] = 0;
+            placeCell(pos + 1, tight && best[pos] == 0);
+            if (split >= 0) {
+                merge(split, group);
+            }
+            return;
+        }
+        // Otherwise try the columns giving the smallest value.
+        int positionBit = 1 << j;
+        int min = Integer.MAX_VALUE;
+        for (int columns = groupColumns[group]; columns != 0; columns &= columns - 1) {
+            int c = Integer.numberOfTrailingZeros(columns);
+            min = Math.min(min, valueOf(board[rowStart + c], positionBit));
+        }
+        if (tight && min > best[pos]) {
+            return;
+        }
+        int seen = version;
+        for (int columns = groupColumns[group]; columns != 0; columns &= columns - 1) {
+            int c = Integer.numberOfTrailingZeros(columns);
+            int digit = board[rowStart + c];
+            if (valueOf(digit, positionBit) != min) {
+                continue;
+            }
+            place(c, j);
+            int committed = commit(digit);
+            out[pos] = min;
+            placeCell(pos + 1, tight && min == best[pos]);
+            undo(digit, committed);
+            unplace(c, j);
+            if (version != seen) {
+                seen = version;
+                tight = true;
+            }
+        }
+    }
+
+    // Move the given columns of a group and as many of its first free
+    // positions to a new group.
+    private int split(int group, int columns) {
+        int split = numOfGroups++;
+        int positions = 0;
+        int free = groupPositions[group];
+        for (int k = Integer.bitCount(columns); k > 0; k--) {
+            int lowest = free & -free;
+            positions |= lowest;
+            free &= ~lowest;
+        }
+        groupColumns[group] &= ~columns;
+        groupPositions[group] = free;
+        groupColumns[split] = columns;
+        groupPositions[split] = positions;
+        for (; columns != 0; columns &= columns - 1) {
+            groupOfColumn[Integer.numberOfTrailingZeros(columns)] = split;
+        }
+        for (; positions != 0; positions &= positions - 1) {
+            groupOfPosition[Integer.numberOfTrailingZeros(positions)] = split;
+        }
+        return split;
+    }
+
+    private void merge(int split, int group) {
+        int columns = groupColumns[split];
+        int positions = groupPositions[split];
+        groupColumns[group] |= columns;
+        groupPositions[group] |= positions;
+        for (; columns != 0; columns &= columns - 1) {
+            groupOfColumn[Integer.numberOfTrailingZeros(columns)] = group;
+        }
+        for (; positions != 0; positions &= positions - 1) {
+            groupOfPosition[Integer.numberOfTrailingZeros(positions)] = group;
+        }
+        numOfGroups--;
+    }
+
+    // Value a digit gets at the current cell. A digit of the first row
+    // whose column is open takes the first free position of its group,
+    // or of the first free output stack of its stack group, any other
+    // place would give it a larger label. Position bits in taken are about
+    // to be used.
+    private int valueOf(int digit, int taken) {
+        if (digit == 0) {
+            return 0;
+        }
+        if (labels[digit] != 0) {
+            return labels[digit];
+        }
+        int c = firstRowColumns[digit];
+        if (c < 0) {
+            return nextLabel;
+        }
+        int s = c / boxCols;
+        if (slotOfStack[s] >= 0) {
+            int free = groupPositions[groupOfColumn[c]] & ~taken;
+            return positionLabels[Integer.numberOfTrailingZeros(free)];
+        }
+        int group = stackGroupOfStack[s];
+        int slot = Integer.numberOfTrailingZeros(stackGroupSlots[group]);
+        return positionLabels[slot * boxCols + stackGroupEmpties[group]];
+    }
+
+    // Give a digit its label as valueOf chose it. Returns the position its
+    // first row column was placed at, plus size if its stack was placed
+    // too, or NEW_LABEL or NOTHING.
+    private int commit(int digit) {
+        if (digit == 0 || labels[digit] != 0) {
+            return NOTHING;
+        }
+        int c = firstRowColumns[digit];
+        if (c < 0) {
+            labels[digit] = nextLabel++;
+            return NEW_LABEL;
+        }
+        int s = c / boxCols;
+        int stacked = 0;
+        if (slotOfStack[s] < 0) {
+            assignStack(s, Integer.numberOfTrailingZeros(stackGroupSlots[stackGroupOfStack[s]]));
+            stacked = size;
+        }
+        int position = Integer.numberOfTrailingZeros(groupPositions[groupOfColumn[c]]);
+        place(c, position);
+        return position + stacked;
+    }
+
+    private void undo(int digit, int committed) {
+        if (committed >= 0) {
+            int c = firstRowColumns[digit];
+            unplace(c, committed % size);
+            if (committed >= size) {
+                unassignStack(c / boxCols, slotOfStack[c / boxCols]);
+            }
+        } else if (committed == NEW_LABEL) {
+            labels[digit] = 0;
+            nextLabel--;
+        }
+    }
+
+    // Put source column c at output position j, a first row digit there
+    // takes the position's label.
+    private void place(int c, int j) {
+        int group = groupOfColumn[c];
+        colMap[j] = c;
+        groupColumns[group] &= ~(1 << c);
+        groupPositions[group] &= ~(1 << j);
+        int digit = board[rowMap[0] * size + c];
+        if (digit != 0) {
+            labels[digit] = positionLabels[j];
+        }
+    }
+
+    private void unplace(int c, int j) {
+        int group = groupOfColumn[c];
+        colMap[j] = -1;
+        groupColumns[group] |= 1 << c;
+        groupPositions[group] |= 1 << j;
+        int digit = board[rowMap[0] * size + c];
+        if (digit != 0) {
+            labels[digit] = 0;
+        }
+    }
+}
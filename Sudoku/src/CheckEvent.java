@@ -0,0 +1,23 @@
+/**
+ *
+ * @author jithu
+ */
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight recorder event of Sudoku.check.
+@Name("sudoku.Check")
+@Label("Board Check")
+@Category("Sudoku")
+@StackTrace(false)
+public class CheckEvent extends jdk.jfr.Event {
+
+    @Label("Grid")
+    int grid;
+    @Label("Clues")
+    int clues;
+    @Label("Valid")
+    boolean valid;
+}
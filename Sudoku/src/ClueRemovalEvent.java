@@ -0,0 +1,30 @@
+/**
+ *
+ * @author jithu
+ */
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Flight recorder event of Sudoku.createPuzzle, the clue removal that is
+// most of the time of a generated puzzle.
+@Name("sudoku.ClueRemoval")
+@Label("Clue Removal")
+@Category("Sudoku")
+@Description("Clues removed from a solved board until the puzzle fits its game mode")
+public class ClueRemovalEvent extends jdk.jfr.Event {
+
+    @Label("Grid")
+    int grid;
+    @Label("Game Mode")
+    int gameMode;
+    @Label("Clues")
+    int clues;
+    @Label("Backtracks")
+    @Description("Solver search nodes of all uniqueness checks")
+    long backtracks;
+    @Label("Refine Rounds")
+    @Description("Rounds of putting clues back and removing again")
+    int refineRounds;
+}
@@ -0,0 +1,291 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.Arrays;
+
+// Exact cover solver (Knuth's Algorithm X with dancing links). A sudoku of
+// size n has n^3 candidate rows (cell, digit) covering 4 n^2 columns: every
+// cell filled once and every digit once per row, column and box. The
+// links live in int arrays built once per grid shape, a solve covers the
+// givens, searches and uncovers everything again.
+public class DancingLinks {
+
+    // Called for every solution found by enumerate. The cells array is
+    // reused, row by row with digits 1..size. Return false to stop.
+    public interface SolutionListener {
+
+        boolean onSolution(int[] cells);
+    }
+
+    private static final int ROOT = 0;
+    private final int size;
+    private final int cellCount;
+    private final int numOfColumns;
+    // Node links, nodes 1..numOfColumns are the column headers.
+    private final int[] left;
+    private final int[] right;
+    private final int[] up;
+    private final int[] down;
+    private final int[] column;
+    // Candidate row (cell * size + digit - 1) of every node.
+    private final int[] candidate;
+    // Number of nodes left in every column.
+    private final int[] columnSize;
+    private final boolean[] covered;
+    // First node of every candidate row.
+    private final int[] rowStart;
+    // Candidate rows chosen by the search, per depth.
+    private final int[] chosen;
+    // Columns covered by the givens, undone after the search.
+    private final int[] givenRows;
+    private int numOfGivens;
+    private final int[] cells;
+    private final int[] solution;
+    private int solutionCount;
+    private int solutionLimit;
+    private SolutionListener listener;
+    private long nodeCount;
+
+    public DancingLinks(int grid) {
+        this(BoardGeometry.of(grid));
+    }
+
+    public DancingLinks(BoardGeometry geometry) {
+        size = geometry.getSize();
+        int[] cellBox = geometry.getCellBoxes();
+        cellCount = size * size;
+        numOfColumns = 4 * cellCount;
+        int numOfRows = cellCount * size;
+        int numOfNodes = 1 + numOfColumns + 4 * numOfRows;
+        left = new int[numOfNodes];
+        right = new int[numOfNodes];
+        up = new int[numOfNodes];
+        down = new int[numOfNodes];
+        column = new int[numOfNodes];
+        candidate = new int[numOfNodes];
+        columnSize = new int[numOfColumns + 1];
+        covered = new boolean[numOfColumns + 1];
+        rowStart = new int[numOfRows];
+        chosen = new int[cellCount];
+        givenRows = new int[cellCount];
+        cells = new int[cellCount];
+        solution = new int[cellCount];
+
+        for (int c = 0; c <= numOfColumns; c++) {
+            left[c] = c == 0 ? numOfColumns : c - 1;
+            right[c] = c == numOfColumns ? 0 : c + 1;
+            up[c] = c;
+            down[c] = c;
+            column[c] = c;
+        }
+
+        int node = numOfColumns + 1;
+        for (int cell = 0; cell < cellCount; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            int box = cellBox[cell];
+            for (int d = 0; d < size; d++) {
+                int r = cell * size + d;
+                int[] columns = {
+                    1 + cell,
+                    1 + cellCount + row * size + d,
+                    1 + 2 * cellCount + col * size + d,
+                    1 + 3 * cellCount + box * size + d};
+                rowStart[r] = node;
+                for (int k = 0; k < 4; k++) {
+                    int c = columns[k];
+                    column[node] = c;
+                    candidate[node] = r;
+                    // Append at the bottom of the column.
+                    up[node] = up[c];
+                    down[node] = c;
+                    down[up[c]] = node;
+                    up[c] = node;
+                    columnSize[c]++;
+                    left[node] = k == 0 ? node + 3 : node - 1;
+                    right[node] = k == 3 ? node - 3 : node + 1;
+                    node++;
+                }
+            }
+        }
+    }
+
+    // Solve the puzzle, returns the solution or null if it has none.
+    public int[][] solve(int[][] puzzle) {
+        if (run(puzzle, 1, null) == 0) {
+            return null;
+        }
+        int[][] solved = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(solution, i * size, solved[i], 0, size);
+        }
+        return solved;
+    }
+
+    // Count solutions of the puzzle, stops as soon as limit is reached.
+    public int countSolutions(int[][] puzzle, int limit) {
+        return run(puzzle, limit, null);
+    }
+
+    // Pass every solution to the listener until it returns false.
+    // Returns the number of solutions seen.
+    public int enumerate(int[][] puzzle, SolutionListener listener) {
+        return run(puzzle, Integer.MAX_VALUE, listener);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // Number of search nodes visited by the last solve.
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    private int run(int[][] puzzle, int limit, SolutionListener solutionListener) {
+        solutionCount = 0;
+        solutionLimit = limit;
+        listener = solutionListener;
+        nodeCount = 0;
+        numOfGivens = 0;
+        if (puzzle.length != size) {
+            return 0;
+        }
+        Arrays.fill(cells, 0);
+        boolean consistent = true;
+        for (int i = 0; i < size && consistent; i++) {
+            for (int j = 0; j < size && consistent; j++) {
+                int digit = puzzle[i][j];
+                if (digit == 0) {
+                    continue;
+                }
+                if (digit < 0 || digit > size) {
+                    consistent = false;
+                    break;
+                }
+                int cell = i * size + j;
+                int r = cell * size + digit - 1;
+                consistent = selectGiven(r);
+                cells[cell] = digit;
+            }
+        }
+        if (consistent) {
+            search(0);
+        }
+        // Undo the givens in reverse order.
+        while (numOfGivens > 0) {
+            int r = givenRows[--numOfGivens];
+            int start = rowStart[r];
+            for (int j = left[start]; j != start; j = left[j]) {
+                uncover(column[j]);
+            }
+            uncover(column[start]);
+        }
+        listener = null;
+        return solutionCount;
+    }
+
+    // Cover the columns of a given. Returns false if one of them is
+    // already covered, the givens then conflict.
+    private boolean selectGiven(int r) {
+        int start = rowStart[r];
+        int j = start;
+        do {
+            if (covered[column[j]]) {
+                return false;
+            }
+            j = right[j];
+        } while (j != start);
+        j = start;
+        do {
+            cover(column[j]);
+            j = right[j];
+        } while (j != start);
+        givenRows[numOfGivens++] = r;
+        return true;
+    }
+
+    // Returns true when enough solutions are found.
+    private boolean search(int depth) {
+        nodeCount++;
+        if (right[ROOT] == ROOT) {
+            return foundSolution(depth);
+        }
+
+        // Branch on the column with the fewest candidates.
+        int best = right[ROOT];
+        for (int c = right[best]; c != ROOT; c = right[c]) {
+            if (columnSize[c] < columnSize[best]) {
+                best = c;
+                if (columnSize[c] <= 1) {
+                    break;
+                }
+            }
+        }
+        if (columnSize[best] == 0) {
+            return false;
+        }
+
+        cover(best);
+        for (int r = down[best]; r != best; r = down[r]) {
+            chosen[depth] = candidate[r];
+            for (int j = right[r]; j != r; j = right[j]) {
+                cover(column[j]);
+            }
+            boolean done = search(depth + 1);
+            for (int j = left[r]; j != r; j = left[j]) {
+                uncover(column[j]);
+            }
+            if (done) {
+                uncover(best);
+                return true;
+            }
+        }
+        uncover(best);
+        return false;
+    }
+
+    private boolean foundSolution(int depth) {
+        for (int k = 0; k < depth; k++) {
+            int r = chosen[k];
+            cells[r / size] = r % size + 1;
+        }
+        if (solutionCount == 0) {
+            System.arraycopy(cells, 0, solution, 0, cellCount);
+        }
+        solutionCount++;
+        boolean keepGoing = listener == null || listener.onSolution(cells);
+        // Clear the search cells again, the givens stay.
+        for (int k = 0; k < depth; k++) {
+            cells[chosen[k] / size] = 0;
+        }
+        return !keepGoing || solutionCount >= solutionLimit;
+    }
+
+    private void cover(int c) {
+        covered[c] = true;
+        right[left[c]] = right[c];
+        left[right[c]] = left[c];
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                columnSize[column[j]]--;
+            }
+        }
+    }
+
+    private void uncover(int c) {
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                columnSize[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        right[left[c]] = c;
+        left[right[c]] = c;
+        covered[c] = false;
+    }
+}
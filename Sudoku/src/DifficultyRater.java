@@ -0,0 +1,468 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.Arrays;
+
+// Rates a puzzle by solving it the way a person would: always with the
+// easiest technique that still makes progress. The rating is the hardest
+// technique that was needed, and every technique's use is counted.
+// Candidates are kept as int bitmasks (bit d-1 for digit d) in arrays
+// allocated once per rater, rating allocates nothing.
+public class DifficultyRater {
+
+    public static final int NAKED_SINGLE = 0;
+    public static final int HIDDEN_SINGLE = 1;
+    public static final int LOCKED_CANDIDATES = 2;
+    public static final int NAKED_PAIR = 3;
+    public static final int HIDDEN_PAIR = 4;
+    public static final int NAKED_TRIPLE = 5;
+    public static final int HIDDEN_TRIPLE = 6;
+    public static final int X_WING = 7;
+    public static final int SWORDFISH = 8;
+    // None of the techniques above can finish the puzzle.
+    public static final int UNSOLVED = 9;
+    public static final int NUM_OF_TECHNIQUES = 10;
+    private static final String[] TECHNIQUE_NAMES = {
+        "Naked single", "Hidden single", "Locked candidates", "Naked pair", "Hidden pair",
+        "Naked triple", "Hidden triple", "X-wing", "Swordfish", "Unsolved"};
+    private final int size;
+    private final int cellCount;
+    private final int allDigits;
+    private final int[] cellRow;
+    private final int[] cellCol;
+    private final int[] cellBox;
+    // units[u * size + k] is the k-th cell of unit u.
+    // Units 0..size-1 are rows, then columns, then boxes.
+    private final int[] units;
+    // peers[cell * numOfPeers + k] is the k-th cell sharing a unit with cell.
+    private final int[] peers;
+    private final int numOfPeers;
+    private final int boxRows;
+    private final int boxCols;
+    private final int[] cells;
+    private final int[] candidates;
+    // positions[u * size + d] has bit k set if digit d+1 fits in the k-th
+    // cell of unit u. Rebuilt before the techniques that need it.
+    private final int[] positions;
+    private final int[] counts = new int[NUM_OF_TECHNIQUES];
+    private int hardest;
+    private int emptyCount;
+
+    public DifficultyRater(int grid) {
+        size = grid;
+        cellCount = grid * grid;
+        allDigits = (1 << grid) - 1;
+        BoardGeometry geometry = BoardGeometry.of(grid);
+        boxRows = geometry.getBoxRows();
+        boxCols = geometry.getBoxCols();
+        cellRow = geometry.getCellRows();
+        cellCol = geometry.getCellColumns();
+        cellBox = geometry.getCellBoxes();
+        units = geometry.getUnits();
+        peers = geometry.getPeers();
+        numOfPeers = geometry.getNumOfPeers();
+
+        cells = new int[cellCount];
+        candidates = new int[cellCount];
+        positions = new int[3 * cellCount];
+    }
+
+    // Rate the puzzle, returns the hardest technique needed or UNSOLVED.
+    public int rate(int[][] puzzle) {
+        Arrays.fill(counts, 0);
+        hardest = NAKED_SINGLE;
+        if (!load(puzzle)) {
+            hardest = UNSOLVED;
+            return hardest;
+        }
+        while (emptyCount > 0) {
+            int technique = step();
+            if (technique == UNSOLVED) {
+                hardest = UNSOLVED;
+                break;
+            }
+            if (technique > hardest) {
+                hardest = technique;
+            }
+        }
+        return hardest;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getHardestTechnique() {
+        return hardest;
+    }
+
+    // How often a technique was used by the last rating.
+    public int getTechniqueCount(int technique) {
+        return counts[technique];
+    }
+
+    public static String getTechniqueName(int technique) {
+        return TECHNIQUE_NAMES[technique];
+    }
+
+    private boolean load(int[][] puzzle) {
+        if (puzzle.length != size) {
+            return false;
+        }
+        Arrays.fill(cells, 0);
+        Arrays.fill(candidates, allDigits);
+        emptyCount = cellCount;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int digit = puzzle[i][j];
+                if (digit == 0) {
+                    continue;
+                }
+                int cell = i * size + j;
+                if (digit < 0 || digit > size || (candidates[cell] & (1 << (digit - 1))) == 0) {
+                    return false;
+                }
+                place(cell, 1 << (digit - 1));
+            }
+        }
+        return true;
+    }
+
+    // Make progress with the easiest technique that works and count its
+    // uses. Singles are placed all at once, a single stays a single when
+    // other digits are placed.
+    private int step() {
+        int placed = nakedSingles();
+        if (placed < 0) {
+            return UNSOLVED;
+        }
+        if (placed > 0) {
+            counts[NAKED_SINGLE] += placed;
+            return NAKED_SINGLE;
+        }
+        placed = hiddenSingles();
+        if (placed > 0) {
+            counts[HIDDEN_SINGLE] += placed;
+            return HIDDEN_SINGLE;
+        }
+        // Every technique below returns on its first elimination, so the
+        // positions stay valid until then.
+        computePositions();
+        int technique = UNSOLVED;
+        if (lockedCandidates()) {
+            technique = LOCKED_CANDIDATES;
+        } else if (nakedSubset(2)) {
+            technique = NAKED_PAIR;
+        } else if (hiddenSubset(2)) {
+            technique = HIDDEN_PAIR;
+        } else if (nakedSubset(3)) {
+            technique = NAKED_TRIPLE;
+        } else if (hiddenSubset(3)) {
+            technique = HIDDEN_TRIPLE;
+        } else if (fish(2)) {
+            technique = X_WING;
+        } else if (fish(3)) {
+            technique = SWORDFISH;
+        }
+        if (technique != UNSOLVED) {
+            counts[technique]++;
+        }
+        return technique;
+    }
+
+    // Returns the number of cells placed, or -1 if a cell has no candidate.
+    private int nakedSingles() {
+        int placed = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (cells[cell] == 0) {
+                int c = candidates[cell];
+                if (c == 0) {
+                    return -1;
+                }
+                if ((c & (c - 1)) == 0) {
+                    place(cell, c);
+                    placed++;
+                }
+            }
+        }
+        return placed;
+    }
+
+    private int hiddenSingles() {
+        int placed = 0;
+        for (int unit = 0; unit < 3 * size; unit++) {
+            int base = unit * size;
+            int once = 0;
+            int twice = 0;
+            for (int k = 0; k < size; k++) {
+                int c = candidates[units[base + k]];
+                twice |= once & c;
+                once |= c;
+            }
+            int hidden = once & ~twice;
+            while (hidden != 0) {
+                int bit = hidden & -hidden;
+                hidden ^= bit;
+                for (int k = 0; k < size; k++) {
+                    int cell = units[base + k];
+                    if ((candidates[cell] & bit) != 0) {
+                        place(cell, bit);
+                        placed++;
+                        break;
+                    }
+                }
+            }
+        }
+        return placed;
+    }
+
+    private void computePositions() {
+        Arrays.fill(positions, 0);
+        for (int unit = 0; unit < 3 * size; unit++) {
+            int base = unit * size;
+            for (int k = 0; k < size; k++) {
+                int c = candidates[units[base + k]];
+                while (c != 0) {
+                    int digit = Integer.numberOfTrailingZeros(c);
+                    c &= c - 1;
+                    positions[base + digit] |= 1 << k;
+                }
+            }
+        }
+    }
+
+    // A digit confined to one line inside a box is removed from the rest of
+    // the line (pointing), a digit confined to one box inside a line is
+    // removed from the rest of the box (claiming).
+    private boolean lockedCandidates() {
+        int boxRowMask = (1 << boxCols) - 1;
+        int boxColMask = 0;
+        for (int r = 0; r < boxRows; r++) {
+            boxColMask |= 1 << (r * boxCols);
+        }
+        for (int digit = 0; digit < size; digit++) {
+            int bit = 1 << digit;
+            for (int box = 0; box < size; box++) {
+                int pos = positions[(2 * size + box) * size + digit];
+                if (pos == 0) {
+                    continue;
+                }
+                // The k-th cell of a box is at row k / boxCols, column k % boxCols.
+                int first = Integer.numberOfTrailingZeros(pos);
+                int row = (box / boxRows) * boxRows + first / boxCols;
+                int col = (box % boxRows) * boxCols + first % boxCols;
+                if ((pos & ~(boxRowMask << (first / boxCols * boxCols))) == 0
+                        && eliminateOutsideBox(row, box, bit)) {
+                    return true;
+                }
+                if ((pos & ~(boxColMask << (first % boxCols))) == 0
+                        && eliminateOutsideBox(size + col, box, bit)) {
+                    return true;
+                }
+            }
+            for (int line = 0; line < 2 * size; line++) {
+                int pos = positions[line * size + digit];
+                if (pos == 0) {
+                    continue;
+                }
+                // Rows cross boxes boxCols cells at a time, columns boxRows.
+                int width = line < size ? boxCols : boxRows;
+                int segment = Integer.numberOfTrailingZeros(pos) / width * width;
+                if ((pos & ~(((1 << width) - 1) << segment)) == 0
+                        && eliminateOutsideLine(cellBox[units[line * size + segment]], line, bit)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean eliminateOutsideBox(int line, int box, int bit) {
+        boolean changed = false;
+        int base = line * size;
+        for (int k = 0; k < size; k++) {
+            int cell = units[base + k];
+            if (cellBox[cell] != box && (candidates[cell] & bit) != 0) {
+                candidates[cell] &= ~bit;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private boolean eliminateOutsideLine(int box, int line, int bit) {
+        boolean changed = false;
+        int base = (2 * size + box) * size;
+        for (int k = 0; k < size; k++) {
+            int cell = units[base + k];
+            int cellLine = line < size ? cellRow[cell] : size + cellCol[cell];
+            if (cellLine != line && (candidates[cell] & bit) != 0) {
+                candidates[cell] &= ~bit;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // n cells of a unit with only n candidates between them: those digits
+    // are removed from the other cells of the unit.
+    private boolean nakedSubset(int n) {
+        for (int unit = 0; unit < 3 * size; unit++) {
+            int base = unit * size;
+            for (int a = 0; a < size; a++) {
+                int ca = candidates[units[base + a]];
+                if (ca == 0 || Integer.bitCount(ca) > n) {
+                    continue;
+                }
+                for (int b = a + 1; b < size; b++) {
+                    int cb = candidates[units[base + b]];
+                    if (cb == 0 || Integer.bitCount(ca | cb) > n) {
+                        continue;
+                    }
+                    if (n == 2) {
+                        if (eliminateSubset(base, ca | cb, (1 << a) | (1 << b))) {
+                            return true;
+                        }
+                        continue;
+                    }
+                    for (int c = b + 1; c < size; c++) {
+                        int cc = candidates[units[base + c]];
+                        if (cc != 0 && Integer.bitCount(ca | cb | cc) == 3
+                                && eliminateSubset(base, ca | cb | cc, (1 << a) | (1 << b) | (1 << c))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Remove digits from the cells of a unit that are not in members.
+    private boolean eliminateSubset(int base, int digits, int members) {
+        boolean changed = false;
+        for (int k = 0; k < size; k++) {
+            int cell = units[base + k];
+            if ((members & (1 << k)) == 0 && (candidates[cell] & digits) != 0) {
+                candidates[cell] &= ~digits;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // n digits of a unit that fit in only n cells: every other candidate
+    // is removed from those cells.
+    private boolean hiddenSubset(int n) {
+        for (int unit = 0; unit < 3 * size; unit++) {
+            int base = unit * size;
+            for (int a = 0; a < size; a++) {
+                int pa = positions[base + a];
+                if (pa == 0 || Integer.bitCount(pa) > n) {
+                    continue;
+                }
+                for (int b = a + 1; b < size; b++) {
+                    int pb = positions[base + b];
+                    if (pb == 0 || Integer.bitCount(pa | pb) > n) {
+                        continue;
+                    }
+                    if (n == 2) {
+                        if (restrictSubset(base, pa | pb, (1 << a) | (1 << b))) {
+                            return true;
+                        }
+                        continue;
+                    }
+                    for (int c = b + 1; c < size; c++) {
+                        int pc = positions[base + c];
+                        if (pc != 0 && Integer.bitCount(pa | pb | pc) == 3
+                                && restrictSubset(base, pa | pb | pc, (1 << a) | (1 << b) | (1 << c))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean restrictSubset(int base, int members, int digits) {
+        boolean changed = false;
+        for (int k = 0; k < size; k++) {
+            int cell = units[base + k];
+            if ((members & (1 << k)) != 0 && (candidates[cell] & ~digits) != 0) {
+                candidates[cell] &= digits;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // X-wing (n = 2) and swordfish (n = 3): a digit that fits in only n
+    // columns of n rows is removed from those columns in every other row,
+    // and the same with rows and columns swapped.
+    private boolean fish(int n) {
+        for (int digit = 0; digit < size; digit++) {
+            int bit = 1 << digit;
+            for (int orientation = 0; orientation < 2; orientation++) {
+                int baseUnit = orientation * size;
+                for (int a = 0; a < size; a++) {
+                    int pa = positions[(baseUnit + a) * size + digit];
+                    if (pa == 0 || Integer.bitCount(pa) > n) {
+                        continue;
+                    }
+                    for (int b = a + 1; b < size; b++) {
+                        int pb = positions[(baseUnit + b) * size + digit];
+                        if (pb == 0 || Integer.bitCount(pa | pb) > n) {
+                            continue;
+                        }
+                        if (n == 2) {
+                            if (eliminateFish(orientation, pa | pb, (1 << a) | (1 << b), bit)) {
+                                return true;
+                            }
+                            continue;
+                        }
+                        for (int c = b + 1; c < size; c++) {
+                            int pc = positions[(baseUnit + c) * size + digit];
+                            if (pc != 0 && Integer.bitCount(pa | pb | pc) == 3
+                                    && eliminateFish(orientation, pa | pb | pc, (1 << a) | (1 << b) | (1 << c), bit)) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Remove bit from the cover lines, except where they cross the base lines.
+    private boolean eliminateFish(int orientation, int coverLines, int baseLines, int bit) {
+        boolean changed = false;
+        int coverUnit = (1 - orientation) * size;
+        for (int line = 0; line < size; line++) {
+            if ((coverLines & (1 << line)) == 0) {
+                continue;
+            }
+            int base = (coverUnit + line) * size;
+            for (int k = 0; k < size; k++) {
+                int cell = units[base + k];
+                if ((baseLines & (1 << k)) == 0 && (candidates[cell] & bit) != 0) {
+                    candidates[cell] &= ~bit;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private void place(int cell, int bit) {
+        cells[cell] = Integer.numberOfTrailingZeros(bit) + 1;
+        candidates[cell] = 0;
+        emptyCount--;
+        int base = cell * numOfPeers;
+        for (int k = 0; k < numOfPeers; k++) {
+            candidates[peers[base + k]] &= ~bit;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ *
+ * @author jithu
+ */
+import java.lang.reflect.Method;
+
+// Whether the Sudoku flight recorder events are created at all. The first
+// event object starts up jdk.jfr, a few hundred milliseconds before a
+// batch command prints anything, and JREs before 8u272 have no jdk.jfr.
+// So events only exist once the recorder runs, from the start with
+// -XX:StartFlightRecording (see sudoku.jfc) or later with jcmd JFR.start.
+// Until then every call asks FlightRecorder.isInitialized through
+// reflection, nothing else of jdk.jfr is loaded. A started recorder stays
+// initialized, so the answer is kept once it is true.
+public final class FlightEvents {
+
+    // FlightRecorder.isInitialized, null without jdk.jfr.
+    private static final Method INITIALIZED = findInitialized();
+    private static volatile boolean recording;
+
+    private FlightEvents() {
+    }
+
+    public static boolean isRecording() {
+        if (!recording && INITIALIZED != null && isInitialized()) {
+            recording = true;
+        }
+        return recording;
+    }
+
+    private static boolean isInitialized() {
+        try {
+            return Boolean.TRUE.equals(INITIALIZED.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    private static Method findInitialized() {
+        try {
+            Class<?> recorder = Class.forName("jdk.jfr.FlightRecorder", false, FlightEvents.class.getClassLoader());
+            return recorder.getMethod("isInitialized");
+        } catch (ReflectiveOperationException e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+}
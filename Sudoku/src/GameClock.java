@@ -0,0 +1,121 @@
+/**
+ *
+ * @author jithu
+ */
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.JLabel;
+import javax.swing.Timer;
+
+// Play time shown in a label as mm:ss. A single shot Swing timer fires on
+// the event thread right after the shown second runs out and is not
+// rescheduled while the clock is stopped or paused, so an open window
+// costs one tick a second. Digits are written into a reused buffer, a
+// String is only made for the label when the text changes.
+public class GameClock {
+
+    private static final int MILLIS_PER_SECOND = 1000;
+    // Fire a little late rather than early, an early tick shows no change
+    // and has to be rescheduled.
+    private static final int TICK_SLACK = 2;
+    private final StopWatch stopWatch = new StopWatch();
+    private final JLabel label;
+    private final Timer timer;
+    // Room for minutes beyond 99, seconds and milliseconds.
+    private final char[] text = new char[32];
+    private long shownSeconds = -1;
+
+    public GameClock(JLabel label) {
+        this.label = label;
+        timer = new Timer(MILLIS_PER_SECOND, new ActionListener() {
+
+            public void actionPerformed(ActionEvent e) {
+                tick();
+            }
+        });
+        timer.setRepeats(false);
+    }
+
+    // All of these must be called on the event thread.
+    public void start() {
+        start(0);
+    }
+
+    public void start(long elapsed) {
+        stopWatch.start(elapsed);
+        shownSeconds = -1;
+        tick();
+    }
+
+    public void stop() {
+        stopWatch.stop();
+        timer.stop();
+        tick();
+    }
+
+    public void pause() {
+        stopWatch.pause();
+        timer.stop();
+    }
+
+    public void resume() {
+        stopWatch.resume();
+        tick();
+    }
+
+    public long getElapsedTime() {
+        return stopWatch.getElapsedTime();
+    }
+
+    // The watch behind the label, for the play time of journaled moves.
+    public StopWatch getStopWatch() {
+        return stopWatch;
+    }
+
+    // Elapsed time with milliseconds, mm:ss:SSS.
+    public String getElapsedText() {
+        return new String(text, 0, format(stopWatch.getElapsedTime(), true, text));
+    }
+
+    private void tick() {
+        long elapsed = stopWatch.getElapsedTime();
+        long seconds = elapsed / MILLIS_PER_SECOND;
+        if (seconds != shownSeconds) {
+            shownSeconds = seconds;
+            label.setText(new String(text, 0, format(elapsed, false, text)));
+        }
+        if (stopWatch.isRunning()) {
+            timer.setInitialDelay((int) (MILLIS_PER_SECOND - elapsed % MILLIS_PER_SECOND) + TICK_SLACK);
+            timer.restart();
+        }
+    }
+
+    // Write millis as mm:ss or mm:ss:SSS into out, returns the length.
+    static int format(long millis, boolean withMillis, char[] out) {
+        long minutes = millis / 60000;
+        int seconds = (int) (millis / 1000 % 60);
+        int length = 0;
+        if (minutes >= 100) {
+            int digits = (int) Math.log10(minutes) + 1;
+            for (int i = digits - 1; i >= 0; i--) {
+                out[length + i] = (char) ('0' + minutes % 10);
+                minutes /= 10;
+            }
+            length += digits;
+        } else {
+            out[length++] = (char) ('0' + minutes / 10);
+            out[length++] = (char) ('0' + minutes % 10);
+        }
+        out[length++] = ':';
+        out[length++] = (char) ('0' + seconds / 10);
+        out[length++] = (char) ('0' + seconds % 10);
+        if (withMillis) {
+            int fraction = (int) (millis % 1000);
+            out[length++] = ':';
+            out[length++] = (char) ('0' + fraction / 100);
+            out[length++] = (char) ('0' + fraction / 10 % 10);
+            out[length++] = (char) ('0' + fraction % 10);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ *
+ * @author jithu
+ */
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Flight recorder event of one Sudoku.getNewPuzzle call, what a New Game
+// click waits for. See sudoku.jfc for the settings of all Sudoku events.
+@Name("sudoku.Generation")
+@Label("Puzzle Generation")
+@Category("Sudoku")
+@Description("A new puzzle handed out by Sudoku.getNewPuzzle")
+public class GenerationEvent extends jdk.jfr.Event {
+
+    @Label("Grid")
+    int grid;
+    @Label("Game Mode")
+    int gameMode;
+    @Label("Clues")
+    int clues;
+    @Label("Backtracks")
+    @Description("Solver search nodes spent making the puzzle, 0 if it was ready made")
+    long backtracks;
+    @Label("Source")
+    @Description("Where the puzzle came from: bank, pool or generated")
+    String source;
+    @Label("Attempts")
+    @Description("Puzzles drawn until one was not seen before")
+    int attempts;
+}
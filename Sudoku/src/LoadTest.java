@@ -0,0 +1,194 @@
+/**
+ *
+ * @author jithu
+ */
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+// Load test for SudokuServer. Keeps many keep-alive connections busy from
+// one selector thread, each sends its next request as soon as the answer
+// to the previous one is in, and prints throughput and latency percentiles.
+//   java LoadTest [connections 1000] [seconds 10] [puzzle|check|solve] [port 8080]
+// The server should run in another JVM, both ends need a file descriptor
+// per connection.
+public class LoadTest {
+
+    private static final String SOLVED = PuzzleFormat.format(BoardGeometry.GRID_9X9.createSolvedBoard());
+    // Hard for a backtracking solver, easy enough for ours.
+    private static final String PUZZLE = "4.....8.5.3..........7......2.....6.....8.4......1.......6.3.7.5..2.....1.4......";
+    // Connections opened at a time, more would overflow the accept queue.
+    private static final int CONNECT_BATCH = 256;
+    private final InetSocketAddress address;
+    private final byte[] request;
+    private long[] latencies = new long[1 << 16];
+    private int numOfLatencies;
+    private long failures;
+
+    public LoadTest(InetSocketAddress address, String kind) {
+        this.address = address;
+        this.request = createRequest(address, kind).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String createRequest(InetSocketAddress address, String kind) {
+        String host = "Host: " + address.getHostString() + ":" + address.getPort() + "\r\n";
+        if ("puzzle".equals(kind)) {
+            return "GET /puzzle?grid=9&mode=60 HTTP/1.1\r\n" + host + "\r\n";
+        }
+        String body = "check".equals(kind) ? SOLVED : PUZZLE;
+        if (!"check".equals(kind) && !"solve".equals(kind)) {
+            throw new IllegalArgumentException("Unknown request " + kind);
+        }
+        return "POST /" + kind + " HTTP/1.1\r\n" + host
+                + "Content-Length: " + body.length() + "\r\n\r\n" + body;
+    }
+
+    public void run(int numOfConnections, int seconds) throws IOException {
+        Selector selector = Selector.open();
+        try {
+            long connectStart = System.nanoTime();
+            int opened = 0;
+            while (opened < numOfConnections) {
+                int batch = Math.min(CONNECT_BATCH, numOfConnections - opened);
+                for (int i = 0; i < batch; i++) {
+                    SocketChannel channel = SocketChannel.open(address);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    channel.configureBlocking(false);
+                    channel.register(selector, SelectionKey.OP_WRITE, new Connection());
+                }
+                opened += batch;
+            }
+            System.out.printf("%d connections open in %d ms%n", opened,
+                    (System.nanoTime() - connectStart) / 1000000);
+            // Warm up for a fifth of the time, then measure.
+            long warmupEnd = System.nanoTime() + seconds * 200000000L;
+            loop(selector, warmupEnd);
+            numOfLatencies = 0;
+            failures = 0;
+            long start = System.nanoTime();
+            loop(selector, start + seconds * 1000000000L);
+            report(System.nanoTime() - start, opened);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        }
+    }
+
+    private void loop(Selector selector, long end) throws IOException {
+        while (System.nanoTime() < end) {
+            selector.select(100);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                SocketChannel channel = (SocketChannel) key.channel();
+                Connection connection = (Connection) key.attachment();
+                if (key.isWritable()) {
+                    connection.write(channel, key);
+                } else if (key.isReadable()) {
+                    connection.read(channel, key);
+                }
+            }
+        }
+    }
+
+    private void record(long latency, boolean ok) {
+        if (!ok) {
+            failures++;
+        }
+        if (numOfLatencies == latencies.length) {
+            latencies = Arrays.copyOf(latencies, 2 * latencies.length);
+        }
+        latencies[numOfLatencies++] = latency;
+    }
+
+    private void report(long elapsed, int numOfConnections) {
+        long[] sorted = Arrays.copyOf(latencies, numOfLatencies);
+        Arrays.sort(sorted);
+        System.out.printf("%d requests in %.1f s, %.0f req/s, %d failed, %d connections%n",
+                numOfLatencies, elapsed / 1e9, numOfLatencies * 1e9 / elapsed, failures, numOfConnections);
+        if (sorted.length > 0) {
+            System.out.printf("latency ms  p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                    percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+                    percentile(sorted, 99.9), sorted[sorted.length - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, double percent) {
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    // One keep-alive connection, either writing a request or reading the
+    // answer to it.
+    private final class Connection {
+
+        private final ByteBuffer out = ByteBuffer.wrap(request);
+        private final ByteBuffer in = ByteBuffer.allocate(4096);
+        private long sent;
+
+        private void write(SocketChannel channel, SelectionKey key) throws IOException {
+            if (out.position() == 0) {
+                sent = System.nanoTime();
+            }
+            channel.write(out);
+            if (!out.hasRemaining()) {
+                out.clear();
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void read(SocketChannel channel, SelectionKey key) throws IOException {
+            if (channel.read(in) < 0) {
+                throw new IOException("Server closed a connection");
+            }
+            int length = responseLength();
+            if (length < 0 || in.position() < length) {
+                return;
+            }
+            boolean ok = in.get(9) == '2';
+            record(System.nanoTime() - sent, ok);
+            // Nothing is pipelined, the buffer holds exactly one response.
+            in.clear();
+            key.interestOps(SelectionKey.OP_WRITE);
+        }
+
+        // Bytes of the whole response, -1 until its headers are in.
+        private int responseLength() {
+            int end = -1;
+            for (int i = 3; i < in.position(); i++) {
+                if (in.get(i) == '\n' && in.get(i - 1) == '\r' && in.get(i - 2) == '\n' && in.get(i - 3) == '\r') {
+                    end = i + 1;
+                    break;
+                }
+            }
+            if (end < 0) {
+                return -1;
+            }
+            String headers = new String(in.array(), 0, end, StandardCharsets.US_ASCII).toLowerCase();
+            int at = headers.indexOf("content-length:");
+            if (at < 0) {
+                return end;
+            }
+            int lineEnd = headers.indexOf('\r', at);
+            return end + Integer.parseInt(headers.substring(at + "content-length:".length(), lineEnd).trim());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int numOfConnections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String kind = args.length > 2 ? args[2] : "check";
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : SudokuServer.DEFAULT_PORT;
+        new LoadTest(new InetSocketAddress("localhost", port), kind).run(numOfConnections, seconds);
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+// Distribution of long values, latencies or counts, with HDR style log
+// linear buckets: every power of two is split into SUB_BUCKETS buckets, so
+// a percentile is off by at most an eighth of its value. Recording is a
+// bucket index from the leading zeros and two LongAdder increments, no
+// lock and no allocation; threads recording at once touch different
+// cells. Readers add the buckets up, a read racing records may be a few
+// values behind.
+public class LongHistogram implements LongHistogramMXBean {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Values below SUB_BUCKETS have a bucket each, then SUB_BUCKETS a
+    // power of two up to 2^63.
+    private static final int NUM_OF_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    };
+    private final String unit;
+    private final LongAdder[] buckets = new LongAdder[NUM_OF_BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(MAX, 0);
+
+    public LongHistogram(String unit) {
+        this.unit = unit;
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    // Negative values count as 0.
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets[bucketOf(value)].increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulate(value);
+        }
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    // Value at or below which the fraction of values lies, the middle of
+    // its bucket, 0 if nothing was recorded.
+    public long getPercentile(double fraction) {
+        long[] counts = new long[NUM_OF_BUCKETS];
+        long count = 0;
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < NUM_OF_BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(lowestOf(i) + (widthOf(i) - 1) / 2, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public long getPercentile50() {
+        return getPercentile(0.5);
+    }
+
+    public long getPercentile90() {
+        return getPercentile(0.9);
+    }
+
+    public long getPercentile99() {
+        return getPercentile(0.99);
+    }
+
+    public long getPercentile999() {
+        return getPercentile(0.999);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowestOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long widthOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return 1;
+        }
+        return 1L << (bucket / SUB_BUCKETS - 1);
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ *
+ * @author jithu
+ */
+
+// A LongHistogram as JMX shows it, see SudokuMetrics. Percentiles are the
+// middle of their bucket.
+public interface LongHistogramMXBean {
+
+    String getUnit();
+
+    long getCount();
+
+    double getMean();
+
+    long getMax();
+
+    long getPercentile50();
+
+    long getPercentile90();
+
+    long getPercentile99();
+
+    long getPercentile999();
+}
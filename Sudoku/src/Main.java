@@ -5,9 +5,20 @@
 public class Main {
 
     /**
-     * @param args the command line arguments
+     * @param args the command line arguments, none opens the game window,
+     * otherwise a headless command, see SudokuCli
      */
     public static void main(String[] args) {
-        new SudokuUI().setVisible(true);
+        if (args.length > 0) {
+            System.exit(SudokuCli.run(args));
+        }
+        SudokuMetrics.register();
+        // Swing components, the game clock among them, live on the event thread.
+        java.awt.EventQueue.invokeLater(new Runnable() {
+
+            public void run() {
+                new SudokuUI().setVisible(true);
+            }
+        });
     }
 }
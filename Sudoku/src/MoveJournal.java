@@ -0,0 +1,542 @@
+/**
+ *
+ * @author jithu
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+// Saves a game as it is played. The file starts with the puzzle and a
+// snapshot of the board, every move after that is appended as a fixed
+// size record. Records go to the file as they are made, so a crash of
+// the JVM loses nothing. Force (fsync) is batched: every FORCE_BATCH
+// records, on the first record after FORCE_INTERVAL and on flush, a crash
+// of the machine loses the records since then.
+// Opening a journal replays the records on top of the snapshot. Undo and
+// redo are recorded too and work on an in-memory history of the last
+// HISTORY_LIMIT moves. When the file grows past COMPACT_RECORDS records
+// it is rewritten with a new snapshot and just that history, so opening
+// never replays more than a few thousand records.
+//
+// File layout (big endian):
+//   header, HEADER_SIZE bytes:
+//     int   MAGIC
+//     short VERSION
+//     byte  grid size
+//     byte  reserved
+//     long  elapsed milliseconds when the snapshot was written
+//   puzzle, grid * grid bytes, 0 = empty
+//   snapshot of the board before the first record, grid * grid bytes
+//   zero padding to a multiple of RECORD_SIZE
+//   records, RECORD_SIZE bytes:
+//     byte  type, MOVE, UNDO, REDO or CLOCK
+//     byte  new digit
+//     byte  old digit
+//     byte  check, see checkByte
+//     short cell
+//     short reserved
+//     long  elapsed milliseconds
+public class MoveJournal {
+
+    public static final int MAGIC = 0x53444B4A; // "SDKJ"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 16;
+    public static final int HISTORY_LIMIT = 1024;
+    public static final int COMPACT_RECORDS = 4 * HISTORY_LIMIT;
+    private static final byte MOVE = 1;
+    private static final byte UNDO = 2;
+    private static final byte REDO = 3;
+    // Play time only, written on flush and close.
+    private static final byte CLOCK = 4;
+    private static final int MAX_FILE_SIZE = 1 << 24;
+    private static final int FORCE_BATCH = 32;
+    private static final long FORCE_INTERVAL = 1000000000L;
+    private final File journalFile;
+    private final int size;
+    private final int cellCount;
+    private final int[][] puzzle;
+    private final boolean[] given;
+    // Board before the oldest move in the history.
+    private final int[] base;
+    // Board after the applied moves.
+    private final int[] cells;
+    // Moves as a ring of HISTORY_LIMIT entries from historyStart, the
+    // first cursor of historySize entries are applied, the rest can be
+    // redone.
+    private final int[] historyCell = new int[HISTORY_LIMIT];
+    private final int[] historyOld = new int[HISTORY_LIMIT];
+    private final int[] historyNew = new int[HISTORY_LIMIT];
+    private int historyStart;
+    private int historySize;
+    private int cursor;
+    private long elapsed;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private long position;
+    private long numOfRecords;
+    private int unforced;
+    private long lastForce;
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    // First write error, the game goes on without saving after one.
+    private IOException error;
+    private BoardModel model;
+    private StopWatch stopWatch;
+    private boolean applying;
+    private final BoardModel.BoardListener listener = new BoardModel.BoardListener() {
+
+        public void boardLoaded(BoardModel model) {
+            // Another game, this journal is done.
+            detach();
+        }
+
+        public void cellChanged(BoardModel model, int row, int col, int oldDigit, int newDigit) {
+            if (!applying) {
+                move(row * size + col, oldDigit, newDigit);
+            }
+        }
+    };
+
+    private MoveJournal(File journalFile, int[][] puzzle) {
+        this.journalFile = journalFile;
+        this.puzzle = puzzle;
+        size = puzzle.length;
+        cellCount = size * size;
+        given = new boolean[cellCount];
+        base = new int[cellCount];
+        cells = new int[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            base[cell] = puzzle[cell / size][cell % size];
+            given[cell] = base[cell] != 0;
+        }
+        System.arraycopy(base, 0, cells, 0, cellCount);
+    }
+
+    // Start a new journal for a puzzle, an old file is replaced.
+    public static MoveJournal create(File journalFile, int[][] puzzle) throws IOException {
+        if (!BoardGeometry.isSupported(puzzle.length)) {
+            throw new IllegalArgumentException("Unsupported grid " + puzzle.length);
+        }
+        File parent = journalFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        MoveJournal journal = new MoveJournal(journalFile, copyOf(puzzle));
+        journal.writeFile(journalFile);
+        journal.openChannel();
+        return journal;
+    }
+
+    // Open a saved game. Records after the last complete and consistent
+    // one, left by a crash, are cut off.
+    public static MoveJournal open(File journalFile) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(journalFile, "r");
+        MoveJournal journal;
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(journalFile + " is not a move journal");
+            }
+            short version = header.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported move journal version " + version);
+            }
+            int grid = header.get() & 0xFF;
+            header.get();
+            long snapshotElapsed = header.getLong();
+            if (!BoardGeometry.isSupported(grid)) {
+                throw new IOException("Unsupported grid " + grid + " in " + journalFile);
+            }
+            int start = getRecordsStart(grid);
+            long length = channel.size() - HEADER_SIZE;
+            // Compaction keeps journals far smaller than this.
+            if (length > MAX_FILE_SIZE) {
+                throw new IOException(journalFile + " is too large for a move journal");
+            }
+            ByteBuffer data = ByteBuffer.allocate((int) length);
+            readFully(channel, data, HEADER_SIZE);
+            data.flip();
+            if (data.remaining() < start - HEADER_SIZE) {
+                throw new IOException(journalFile + " is truncated");
+            }
+            int cellCount = grid * grid;
+            int[][] puzzle = new int[grid][grid];
+            for (int cell = 0; cell < cellCount; cell++) {
+                puzzle[cell / grid][cell % grid] = checkDigit(data.get(), grid, journalFile);
+            }
+            journal = new MoveJournal(journalFile, puzzle);
+            for (int cell = 0; cell < cellCount; cell++) {
+                int digit = checkDigit(data.get(), grid, journalFile);
+                if (journal.given[cell] && digit != journal.base[cell]) {
+                    throw new IOException(journalFile + " has a snapshot of another puzzle");
+                }
+                journal.base[cell] = digit;
+            }
+            System.arraycopy(journal.base, 0, journal.cells, 0, cellCount);
+            journal.elapsed = snapshotElapsed;
+            data.position(start - HEADER_SIZE);
+            journal.position = start;
+            while (data.remaining() >= RECORD_SIZE && journal.replay(data)) {
+                journal.position += RECORD_SIZE;
+                journal.numOfRecords++;
+            }
+        } finally {
+            in.close();
+        }
+        long end = journal.position;
+        journal.openChannel();
+        // Drop what could not be replayed.
+        journal.channel.truncate(end);
+        journal.position = end;
+        if (journal.numOfRecords >= COMPACT_RECORDS) {
+            journal.compact();
+        }
+        return journal;
+    }
+
+    public int[][] getPuzzle() {
+        return copyOf(puzzle);
+    }
+
+    // Play time of the last record, or of the snapshot.
+    public long getElapsedTime() {
+        return elapsed;
+    }
+
+    // Board as journaled, row by row.
+    public int[] getCells() {
+        return cells.clone();
+    }
+
+    // Bring a model to the journaled board and record its moves from
+    // now on, with the play time of the stop watch.
+    public void attach(BoardModel model, StopWatch stopWatch) {
+        if (model.getSize() != size) {
+            throw new IllegalArgumentException("A " + size + "x" + size + " journal can not record a " + model.getSize() + " grid");
+        }
+        detach();
+        applying = true;
+        try {
+            model.load(puzzle);
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (!given[cell]) {
+                    model.set(cell / size, cell % size, cells[cell]);
+                }
+            }
+        } finally {
+            applying = false;
+        }
+        this.model = model;
+        this.stopWatch = stopWatch;
+        model.addBoardListener(listener);
+    }
+
+    public void detach() {
+        if (model != null) {
+            model.removeBoardListener(listener);
+            model = null;
+        }
+    }
+
+    public boolean canUndo() {
+        return cursor > 0;
+    }
+
+    public boolean canRedo() {
+        return cursor < historySize;
+    }
+
+    // Take back the last move, returns false if there is none.
+    public boolean undo() {
+        if (!canUndo()) {
+            return false;
+        }
+        int entry = (historyStart + cursor - 1) % HISTORY_LIMIT;
+        cursor--;
+        apply(historyCell[entry], historyOld[entry]);
+        append(UNDO, historyCell[entry], historyOld[entry], historyNew[entry]);
+        return true;
+    }
+
+    public boolean redo() {
+        if (!canRedo()) {
+            return false;
+        }
+        int entry = (historyStart + cursor) % HISTORY_LIMIT;
+        cursor++;
+        apply(historyCell[entry], historyNew[entry]);
+        append(REDO, historyCell[entry], historyNew[entry], historyOld[entry]);
+        return true;
+    }
+
+    // Save the play time and force everything to disk, for example when
+    // the game is paused.
+    public void flush() throws IOException {
+        if (channel != null && error == null) {
+            append(CLOCK, 0, 0, 0);
+            force();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    public void close() throws IOException {
+        detach();
+        try {
+            flush();
+        } finally {
+            if (file != null) {
+                file.close();
+                file = null;
+                channel = null;
+            }
+        }
+    }
+
+    // Close and remove the file, for a game that is over.
+    public void delete() throws IOException {
+        try {
+            close();
+        } catch (IOException e) {
+            // The file goes anyway.
+        }
+        if (journalFile.exists() && !journalFile.delete()) {
+            throw new IOException("Could not delete " + journalFile);
+        }
+    }
+
+    private void move(int cell, int oldDigit, int newDigit) {
+        // A new move drops the moves that could be redone.
+        historySize = cursor;
+        if (historySize == HISTORY_LIMIT) {
+            // Forget the oldest move, the base board moves past it.
+            base[historyCell[historyStart]] = historyNew[historyStart];
+            historyStart = (historyStart + 1) % HISTORY_LIMIT;
+            historySize--;
+        }
+        int entry = (historyStart + historySize) % HISTORY_LIMIT;
+        historyCell[entry] = cell;
+        historyOld[entry] = oldDigit;
+        historyNew[entry] = newDigit;
+        historySize++;
+        cursor = historySize;
+        cells[cell] = newDigit;
+        append(MOVE, cell, newDigit, oldDigit);
+    }
+
+    // Set a cell of the model without recording it as a move.
+    private void apply(int cell, int digit) {
+        cells[cell] = digit;
+        if (model != null) {
+            applying = true;
+            try {
+                model.set(cell / size, cell % size, digit);
+            } finally {
+                applying = false;
+            }
+        }
+    }
+
+    // Replay one record read from the file, false if it is damaged or
+    // does not fit the board.
+    private boolean replay(ByteBuffer data) {
+        int start = data.position();
+        byte type = data.get();
+        int newDigit = data.get() & 0xFF;
+        int oldDigit = data.get() & 0xFF;
+        byte check = data.get();
+        int cell = data.getShort() & 0xFFFF;
+        data.getShort();
+        long time = data.getLong();
+        if (check != checkByte(type, newDigit, oldDigit, cell, time)) {
+            data.position(start);
+            return false;
+        }
+        if (type == CLOCK) {
+            elapsed = time;
+            return true;
+        }
+        if (cell >= cellCount || given[cell] || newDigit > size || oldDigit > size || cells[cell] != oldDigit) {
+            data.position(start);
+            return false;
+        }
+        if (type == MOVE) {
+            move(cell, oldDigit, newDigit);
+        } else if (type == UNDO && canUndo() && matches(cursor - 1, cell, newDigit, oldDigit)) {
+            cursor--;
+            cells[cell] = newDigit;
+        } else if (type == REDO && canRedo() && matches(cursor, cell, oldDigit, newDigit)) {
+            cursor++;
+            cells[cell] = newDigit;
+        } else {
+            data.position(start);
+            return false;
+        }
+        elapsed = time;
+        return true;
+    }
+
+    private boolean matches(int index, int cell, int oldDigit, int newDigit) {
+        int entry = (historyStart + index) % HISTORY_LIMIT;
+        return historyCell[entry] == cell && historyOld[entry] == oldDigit && historyNew[entry] == newDigit;
+    }
+
+    private void append(byte type, int cell, int newDigit, int oldDigit) {
+        if (stopWatch != null) {
+            elapsed = stopWatch.getElapsedTime();
+        }
+        if (channel == null || error != null) {
+            return;
+        }
+        try {
+            record.clear();
+            record.put(type);
+            record.put((byte) newDigit);
+            record.put((byte) oldDigit);
+            record.put(checkByte(type, newDigit, oldDigit, cell, elapsed));
+            record.putShort((short) cell);
+            record.putShort((short) 0);
+            record.putLong(elapsed);
+            record.flip();
+            writeFully(channel, record, position);
+            position += RECORD_SIZE;
+            numOfRecords++;
+            unforced++;
+            if (unforced >= FORCE_BATCH || System.nanoTime() - lastForce >= FORCE_INTERVAL) {
+                force();
+            }
+            // The history already has this record, the new file will too.
+            if (numOfRecords >= COMPACT_RECORDS) {
+                compact();
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    private void force() throws IOException {
+        if (unforced > 0) {
+            channel.force(false);
+            unforced = 0;
+        }
+        lastForce = System.nanoTime();
+    }
+
+    // Rewrite the file as a snapshot of the base board followed by the
+    // history, the moves that can be redone as undone moves.
+    private void compact() throws IOException {
+        File temp = new File(journalFile.getPath() + ".tmp");
+        writeFile(temp);
+        file.close();
+        Files.move(temp.toPath(), journalFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        openChannel();
+    }
+
+    // Write header, puzzle, base board and history to a file and force it.
+    private void writeFile(File target) throws IOException {
+        int start = getRecordsStart(size);
+        int undone = historySize - cursor;
+        ByteBuffer data = ByteBuffer.allocate(start + (historySize + undone) * RECORD_SIZE);
+        data.putInt(MAGIC);
+        data.putShort(VERSION);
+        data.put((byte) size);
+        data.put((byte) 0);
+        data.putLong(elapsed);
+        for (int cell = 0; cell < cellCount; cell++) {
+            data.put((byte) puzzle[cell / size][cell % size]);
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            data.put((byte) base[cell]);
+        }
+        data.position(start);
+        for (int i = 0; i < historySize; i++) {
+            int entry = (historyStart + i) % HISTORY_LIMIT;
+            putRecord(data, MOVE, historyCell[entry], historyNew[entry], historyOld[entry]);
+        }
+        for (int i = historySize - 1; i >= cursor; i--) {
+            int entry = (historyStart + i) % HISTORY_LIMIT;
+            putRecord(data, UNDO, historyCell[entry], historyOld[entry], historyNew[entry]);
+        }
+        data.flip();
+        RandomAccessFile out = new RandomAccessFile(target, "rw");
+        try {
+            out.setLength(0);
+            writeFully(out.getChannel(), data, 0);
+            out.getChannel().force(true);
+        } finally {
+            out.close();
+        }
+        numOfRecords = historySize + undone;
+    }
+
+    private void putRecord(ByteBuffer data, byte type, int cell, int newDigit, int oldDigit) {
+        data.put(type);
+        data.put((byte) newDigit);
+        data.put((byte) oldDigit);
+        data.put(checkByte(type, newDigit, oldDigit, cell, elapsed));
+        data.putShort((short) cell);
+        data.putShort((short) 0);
+        data.putLong(elapsed);
+    }
+
+    private void openChannel() throws IOException {
+        file = new RandomAccessFile(journalFile, "rw");
+        channel = file.getChannel();
+        position = channel.size();
+        lastForce = System.nanoTime();
+    }
+
+    // A byte that a torn or zeroed record is unlikely to match.
+    private static byte checkByte(byte type, int newDigit, int oldDigit, int cell, long time) {
+        int hash = MAGIC;
+        hash = 31 * hash + type;
+        hash = 31 * hash + newDigit;
+        hash = 31 * hash + oldDigit;
+        hash = 31 * hash + cell;
+        hash = 31 * hash + (int) (time ^ (time >>> 32));
+        return (byte) (hash ^ hash >>> 8 ^ hash >>> 16 ^ hash >>> 24);
+    }
+
+    private static int getRecordsStart(int grid) {
+        int end = HEADER_SIZE + 2 * grid * grid;
+        return (end + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+    }
+
+    private static int checkDigit(byte value, int grid, File journalFile) throws IOException {
+        int digit = value & 0xFF;
+        if (digit > grid) {
+            throw new IOException(journalFile + " has an invalid cell " + digit);
+        }
+        return digit;
+    }
+
+    private static int[][] copyOf(int[][] board) {
+        int[][] copy = new int[board.length][];
+        for (int i = 0; i < board.length; i++) {
+            copy[i] = board[i].clone();
+        }
+        return copy;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        int read;
+        while (data.hasRemaining() && (read = channel.read(data, position)) > 0) {
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ *
+ * @author jithu
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+// Read only view of a puzzle bank file. The file is memory mapped and
+// records are decoded straight from the mapping, nothing is loaded onto
+// the heap.
+//
+// File layout (big endian):
+//   header, HEADER_SIZE bytes:
+//     int   MAGIC
+//     short VERSION
+//     short record size in bytes
+//     short cell capacity of a record
+//     6 bytes reserved
+//   fixed size records:
+//     byte  grid size
+//     byte  difficulty, the hardest technique DifficultyRater needed
+//     cells row by row, 4 bits per cell, high nibble first, 0 = empty
+public class PuzzleBank {
+
+    public static final int MAGIC = 0x53444B42; // "SDKB"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    // Largest digit that fits in 4 bits.
+    public static final int MAX_GRID = 15;
+    private final RandomAccessFile file;
+    private final int recordSize;
+    private final int cellCapacity;
+    private final long size;
+    // Mappings are limited to 2GB, large banks use several segments.
+    private final int recordsPerSegment;
+    private final MappedByteBuffer[] segments;
+
+    public PuzzleBank(File bankFile) throws IOException {
+        file = new RandomAccessFile(bankFile, "r");
+        FileChannel channel = file.getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        int read = channel.read(header, 0);
+        header.flip();
+        if (read < HEADER_SIZE || header.getInt() != MAGIC) {
+            file.close();
+            throw new IOException(bankFile + " is not a puzzle bank");
+        }
+        short version = header.getShort();
+        if (version != VERSION) {
+            file.close();
+            throw new IOException("Unsupported puzzle bank version " + version);
+        }
+        recordSize = header.getShort();
+        cellCapacity = header.getShort();
+        size = (channel.size() - HEADER_SIZE) / recordSize;
+
+        recordsPerSegment = Integer.MAX_VALUE / recordSize;
+        int numOfSegments = (int) ((size + recordsPerSegment - 1) / recordsPerSegment);
+        segments = new MappedByteBuffer[numOfSegments];
+        for (int i = 0; i < numOfSegments; i++) {
+            long first = (long) i * recordsPerSegment;
+            long records = Math.min(recordsPerSegment, size - first);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + first * recordSize, records * recordSize);
+        }
+    }
+
+    // Bytes of one record that can hold cellCapacity cells.
+    public static int getRecordSize(int cellCapacity) {
+        return 2 + (cellCapacity + 1) / 2;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int getCellCapacity() {
+        return cellCapacity;
+    }
+
+    public int getGrid(long index) {
+        return segment(index).get(offset(index)) & 0xFF;
+    }
+
+    public int getDifficulty(long index) {
+        return segment(index).get(offset(index) + 1) & 0xFF;
+    }
+
+    public int getCell(long index, int row, int col) {
+        MappedByteBuffer segment = segment(index);
+        int offset = offset(index);
+        int cell = row * (segment.get(offset) & 0xFF) + col;
+        int packed = segment.get(offset + 2 + cell / 2);
+        return (cell & 1) == 0 ? (packed >> 4) & 0xF : packed & 0xF;
+    }
+
+    public int[][] read(long index) {
+        MappedByteBuffer segment = segment(index);
+        int offset = offset(index);
+        int grid = segment.get(offset) & 0xFF;
+        int[][] puzzle = new int[grid][grid];
+        for (int cell = 0; cell < grid * grid; cell++) {
+            int packed = segment.get(offset + 2 + cell / 2);
+            puzzle[cell / grid][cell % grid] = (cell & 1) == 0 ? (packed >> 4) & 0xF : packed & 0xF;
+        }
+        return puzzle;
+    }
+
+    // CRC-32 of the header and of the first and the last of the first
+    // count records. Appending leaves it as it was, so an index keeps it
+    // to tell its bank from one that replaced it.
+    public long checksum(long count) {
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) recordSize);
+        header.putShort((short) cellCapacity);
+        crc.update(header.array());
+        if (count > 0) {
+            update(crc, 0);
+            update(crc, count - 1);
+        }
+        return crc.getValue();
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void update(CRC32 crc, long index) {
+        MappedByteBuffer segment = segment(index);
+        int offset = offset(index);
+        for (int i = 0; i < recordSize; i++) {
+            crc.update(segment.get(offset + i));
+        }
+    }
+
+    private MappedByteBuffer segment(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Puzzle " + index + " of " + size);
+        }
+        return segments[(int) (index / recordsPerSegment)];
+    }
+
+    private int offset(long index) {
+        return (int) (index % recordsPerSegment) * recordSize;
+    }
+}
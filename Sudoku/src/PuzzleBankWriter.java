@@ -0,0 +1,129 @@
+/**
+ *
+ * @author jithu
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Appends puzzles to a bank file, see PuzzleBank for the layout.
+// A new file is created with a header, an existing one is appended to.
+public class PuzzleBankWriter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int recordSize;
+    private final int cellCapacity;
+    private final ByteBuffer buffer;
+
+    // Open a bank for 9x9 and smaller puzzles.
+    public PuzzleBankWriter(File bankFile) throws IOException {
+        this(bankFile, Sudoku.GRID_9X9 * Sudoku.GRID_9X9);
+    }
+
+    public PuzzleBankWriter(File bankFile, int cellCapacity) throws IOException {
+        file = new RandomAccessFile(bankFile, "rw");
+        channel = file.getChannel();
+        if (channel.size() == 0) {
+            this.cellCapacity = cellCapacity;
+            this.recordSize = PuzzleBank.getRecordSize(cellCapacity);
+            ByteBuffer header = ByteBuffer.allocate(PuzzleBank.HEADER_SIZE);
+            header.putInt(PuzzleBank.MAGIC);
+            header.putShort(PuzzleBank.VERSION);
+            header.putShort((short) recordSize);
+            header.putShort((short) cellCapacity);
+            // Reserved bytes stay zero.
+            header.rewind();
+            writeFully(header, 0);
+        } else {
+            // Only the header is read, a mapping would keep the file from
+            // being truncated on some systems until it is collected.
+            ByteBuffer header = ByteBuffer.allocate(PuzzleBank.HEADER_SIZE);
+            int read = channel.read(header, 0);
+            header.flip();
+            if (read < PuzzleBank.HEADER_SIZE || header.getInt() != PuzzleBank.MAGIC) {
+                file.close();
+                throw new IOException(bankFile + " is not a puzzle bank");
+            }
+            short version = header.getShort();
+            if (version != PuzzleBank.VERSION) {
+                file.close();
+                throw new IOException("Unsupported puzzle bank version " + version);
+            }
+            this.recordSize = header.getShort();
+            this.cellCapacity = header.getShort();
+            // Drop a partly written last record.
+            long records = (channel.size() - PuzzleBank.HEADER_SIZE) / recordSize;
+            channel.truncate(PuzzleBank.HEADER_SIZE + records * recordSize);
+        }
+        buffer = ByteBuffer.allocate(BUFFER_SIZE - BUFFER_SIZE % recordSize);
+    }
+
+    // Difficulty is the rating of the puzzle, see DifficultyRater.rate.
+    public void append(int[][] puzzle, int difficulty) throws IOException {
+        int grid = puzzle.length;
+        if (grid > PuzzleBank.MAX_GRID || grid * grid > cellCapacity) {
+            throw new IllegalArgumentException("Grid " + grid + " does not fit in this bank");
+        }
+        if (difficulty < 0 || difficulty > 0xFF) {
+            throw new IllegalArgumentException("Invalid difficulty " + difficulty);
+        }
+        // Check every cell before the first byte goes into the buffer, a
+        // half written record would shift all later ones.
+        for (int[] row : puzzle) {
+            if (row.length != grid) {
+                throw new IllegalArgumentException("Rows of " + row.length + " cells in a " + grid + " grid");
+            }
+            for (int value : row) {
+                if (value < 0 || value > grid) {
+                    throw new IllegalArgumentException("Invalid value " + value);
+                }
+            }
+        }
+        if (buffer.remaining() < recordSize) {
+            flush();
+        }
+        int start = buffer.position();
+        buffer.put((byte) grid);
+        buffer.put((byte) difficulty);
+        int packed = 0;
+        for (int cell = 0; cell < grid * grid; cell++) {
+            int value = puzzle[cell / grid][cell % grid];
+            if ((cell & 1) == 0) {
+                packed = value << 4;
+            } else {
+                buffer.put((byte) (packed | value));
+            }
+        }
+        if ((grid * grid & 1) == 1) {
+            buffer.put((byte) packed);
+        }
+        // Unused cells of smaller grids are left empty.
+        while (buffer.position() < start + recordSize) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer, channel.size());
+        buffer.clear();
+    }
+
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            file.close();
+        }
+    }
+
+    private void writeFully(ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+}
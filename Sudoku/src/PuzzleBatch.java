@@ -0,0 +1,45 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+
+// Fills a range of a result array with new puzzles. Ranges are split in
+// halves and every half gets its own split of the random state, so leaves
+// run on separate Sudoku instances without any shared mutable state.
+public class PuzzleBatch extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+    // Puzzles generated by one leaf task.
+    private static final int THRESHOLD = 4;
+    private final int[][][] puzzles;
+    private final int from;
+    private final int to;
+    private final int grid;
+    private final int gameMode;
+    private final SplittableRandom random;
+
+    public PuzzleBatch(int[][][] puzzles, int from, int to, int grid, int gameMode, SplittableRandom random) {
+        this.puzzles = puzzles;
+        this.from = from;
+        this.to = to;
+        this.grid = grid;
+        this.gameMode = gameMode;
+        this.random = random;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            Sudoku sudoku = new Sudoku(random);
+            for (int i = from; i < to; i++) {
+                puzzles[i] = sudoku.getNewPuzzle(grid, gameMode);
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new PuzzleBatch(puzzles, from, middle, grid, gameMode, random.split()),
+                new PuzzleBatch(puzzles, middle, to, grid, gameMode, random));
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.HashMap;
+import java.util.HashSet;
+
+// Remembers puzzles to tell the ones equivalent to an earlier puzzle, up to
+// the symmetries of Canonicalizer. Puzzles are told apart by fingerprint
+// first; the canonical form costs a lot more and is only worked out when
+// two puzzles share a fingerprint, for both of them. The first puzzle of
+// a fingerprint is kept packed a byte a cell until then. Any grid size may
+// be added. Not thread safe.
+public class PuzzleDeduplicator {
+
+    private final HashMap<Integer, Canonicalizer> canonicalizers = new HashMap<Integer, Canonicalizer>();
+    // The only puzzle added with a fingerprint, and the canonical keys of
+    // all puzzles with a fingerprint more than one had.
+    private final HashMap<Long, byte[]> firsts = new HashMap<Long, byte[]>();
+    private final HashMap<Long, HashSet<String>> keys = new HashMap<Long, HashSet<String>>();
+    private long size;
+    private long canonicalized;
+
+    // Returns true if the puzzle is new, false if an equivalent one was
+    // added before.
+    public boolean add(int[][] puzzle) {
+        Canonicalizer canonicalizer = getCanonicalizer(puzzle.length);
+        Long fingerprint = canonicalizer.fingerprint(puzzle);
+        HashSet<String> known = keys.get(fingerprint);
+        if (known == null) {
+            byte[] first = firsts.get(fingerprint);
+            if (first == null) {
+                firsts.put(fingerprint, pack(puzzle));
+                size++;
+                return true;
+            }
+            known = new HashSet<String>();
+            int[][] other = unpack(first);
+            known.add(key(getCanonicalizer(other.length), other));
+            firsts.remove(fingerprint);
+            keys.put(fingerprint, known);
+        }
+        if (known.add(key(canonicalizer, puzzle))) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    // Number of distinct puzzles added.
+    public long size() {
+        return size;
+    }
+
+    // Number of canonical forms worked out.
+    public long getCanonicalized() {
+        return canonicalized;
+    }
+
+    private String key(Canonicalizer canonicalizer, int[][] puzzle) {
+        canonicalized++;
+        return canonicalizer.key(puzzle);
+    }
+
+    private Canonicalizer getCanonicalizer(int grid) {
+        Canonicalizer canonicalizer = canonicalizers.get(grid);
+        if (canonicalizer == null) {
+            canonicalizer = new Canonicalizer(grid);
+            canonicalizers.put(grid, canonicalizer);
+        }
+        return canonicalizer;
+    }
+
+    private static byte[] pack(int[][] puzzle) {
+        int size = puzzle.length;
+        byte[] cells = new byte[size * size];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = (byte) puzzle[cell / size][cell % size];
+        }
+        return cells;
+    }
+
+    private static int[][] unpack(byte[] cells) {
+        int size = (int) Math.round(Math.sqrt(cells.length));
+        int[][] puzzle = new int[size][size];
+        for (int cell = 0; cell < cells.length; cell++) {
+            puzzle[cell / size][cell % size] = cells[cell];
+        }
+        return puzzle;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ *
+ * @author jithu
+ */
+// Text form of a puzzle: one line of grid * grid characters, row by row,
+// 81 characters for a 9x9. Digits are 1-9, then A, B, ... for 10 and up
+// (lower case is accepted). '.' or '0' is an empty cell.
+public class PuzzleFormat {
+
+    public static final char EMPTY = '.';
+
+    // Grid size of a line with the given number of cells, or -1 if no
+    // supported grid has that many.
+    public static int getGrid(int length) {
+        int grid = (int) Math.round(Math.sqrt(length));
+        return grid * grid == length && BoardGeometry.isSupported(grid) ? grid : -1;
+    }
+
+    public static int[][] parse(CharSequence line) {
+        int grid = getGrid(line.length());
+        if (grid < 0) {
+            throw new IllegalArgumentException("A puzzle line can not have " + line.length() + " characters");
+        }
+        int[][] puzzle = new int[grid][grid];
+        for (int i = 0; i < line.length(); i++) {
+            int digit = toDigit(line.charAt(i));
+            if (digit < 0 || digit > grid) {
+                throw new IllegalArgumentException("Invalid cell '" + line.charAt(i) + "' at " + (i + 1));
+            }
+            puzzle[i / grid][i % grid] = digit;
+        }
+        return puzzle;
+    }
+
+    public static String format(int[][] puzzle) {
+        StringBuilder line = new StringBuilder(puzzle.length * puzzle.length);
+        for (int[] row : puzzle) {
+            for (int digit : row) {
+                line.append(toChar(digit));
+            }
+        }
+        return line.toString();
+    }
+
+    // Digit of a cell character, 0 for empty, -1 if it is not a cell.
+    public static int toDigit(char c) {
+        if (c == EMPTY || c == '0') {
+            return 0;
+        } else if ('1' <= c && c <= '9') {
+            return c - '0';
+        } else if ('A' <= c && c <= 'Z') {
+            return c - 'A' + 10;
+        } else if ('a' <= c && c <= 'z') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    public static char toChar(int digit) {
+        if (digit == 0) {
+            return EMPTY;
+        }
+        return digit < 10 ? (char) ('0' + digit) : (char) ('A' + digit - 10);
+    }
+}
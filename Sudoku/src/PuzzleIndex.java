@@ -0,0 +1,217 @@
+/**
+ *
+ * @author jithu
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+// Maps every (grid, difficulty) bucket of a puzzle bank to the record
+// numbers of its puzzles, so a random puzzle of a given difficulty is a
+// single array lookup. Difficulties are DifficultyRater techniques. The
+// index remembers how many bank records it has seen and only scans new
+// records when puzzles are appended. A checksum of the bank tells when
+// the file was replaced, see PuzzleBank.checksum.
+//
+// File layout (big endian), stored next to the bank as <bank>.idx:
+//   int  MAGIC
+//   short VERSION
+//   short reserved
+//   long number of bank records indexed
+//   long PuzzleBank.checksum of those records
+//   int  number of buckets
+//   per bucket:
+//     byte grid size
+//     byte difficulty
+//     short reserved
+//     int  number of puzzles
+//     int  record number of every puzzle
+public class PuzzleIndex {
+
+    public static final int MAGIC = 0x53444B49; // "SDKI"
+    public static final short VERSION = 1;
+    public static final String FILE_SUFFIX = ".idx";
+    private final TreeMap<Integer, Bucket> buckets = new TreeMap<Integer, Bucket>();
+    private long indexedRecords;
+    private long bankChecksum;
+
+    // Load the index stored next to the bank, bring it up to date with
+    // the bank and store it again if anything was added.
+    public static PuzzleIndex open(File bankFile, PuzzleBank bank) throws IOException {
+        File indexFile = new File(bankFile.getPath() + FILE_SUFFIX);
+        PuzzleIndex index = new PuzzleIndex();
+        if (indexFile.exists()) {
+            try {
+                index = load(indexFile);
+            } catch (IOException e) {
+                // A damaged index, it is rebuilt from the bank.
+                index = new PuzzleIndex();
+            }
+        }
+        if (index.indexedRecords > bank.size() || index.bankChecksum != bank.checksum(index.indexedRecords)) {
+            // The bank was replaced, start over.
+            index = new PuzzleIndex();
+        }
+        if (index.update(bank) > 0 || !indexFile.exists()) {
+            index.save(indexFile);
+        }
+        return index;
+    }
+
+    // Index the records appended since the last update.
+    // Returns the number of new records.
+    public int update(PuzzleBank bank) {
+        long size = bank.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Puzzle bank too large to index: " + size);
+        }
+        int added = 0;
+        for (long i = indexedRecords; i < size; i++) {
+            getBucket(bank.getGrid(i), bank.getDifficulty(i), true).add((int) i);
+            added++;
+        }
+        indexedRecords = size;
+        bankChecksum = bank.checksum(size);
+        return added;
+    }
+
+    public int count(int grid, int difficulty) {
+        Bucket bucket = getBucket(grid, difficulty, false);
+        return bucket == null ? 0 : bucket.size;
+    }
+
+    // Random record number with the grid and difficulty, or -1 if the
+    // bank has none.
+    public long draw(int grid, int difficulty, SplittableRandom random) {
+        Bucket bucket = getBucket(grid, difficulty, false);
+        if (bucket == null || bucket.size == 0) {
+            return -1;
+        }
+        return bucket.records[random.nextInt(bucket.size)];
+    }
+
+    // Random record number with the grid and a difficulty from min to max,
+    // every such puzzle equally likely. -1 if the bank has none.
+    public long draw(int grid, int minDifficulty, int maxDifficulty, SplittableRandom random) {
+        int total = 0;
+        for (int difficulty = minDifficulty; difficulty <= maxDifficulty; difficulty++) {
+            total += count(grid, difficulty);
+        }
+        if (total == 0) {
+            return -1;
+        }
+        int pick = random.nextInt(total);
+        for (int difficulty = minDifficulty; ; difficulty++) {
+            int size = count(grid, difficulty);
+            if (pick < size) {
+                return getBucket(grid, difficulty, false).records[pick];
+            }
+            pick -= size;
+        }
+    }
+
+    public long getIndexedRecords() {
+        return indexedRecords;
+    }
+
+    public static PuzzleIndex load(File indexFile) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(indexFile + " is not a puzzle index");
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported puzzle index version " + version);
+            }
+            in.readShort();
+            PuzzleIndex index = new PuzzleIndex();
+            index.indexedRecords = in.readLong();
+            index.bankChecksum = in.readLong();
+            int numOfBuckets = in.readInt();
+            for (int b = 0; b < numOfBuckets; b++) {
+                int grid = in.readUnsignedByte();
+                int difficulty = in.readUnsignedByte();
+                in.readShort();
+                int size = in.readInt();
+                Bucket bucket = index.getBucket(grid, difficulty, true);
+                bucket.records = new int[Math.max(size, 16)];
+                for (int i = 0; i < size; i++) {
+                    bucket.records[i] = in.readInt();
+                }
+                bucket.size = size;
+            }
+            return index;
+        } finally {
+            in.close();
+        }
+    }
+
+    // Written to a temporary file first and moved over the old index in
+    // one step, so a crash leaves either the old or the new one.
+    public void save(File indexFile) throws IOException {
+        File temp = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeLong(indexedRecords);
+            out.writeLong(bankChecksum);
+            out.writeInt(buckets.size());
+            for (Bucket bucket : buckets.values()) {
+                out.writeByte(bucket.grid);
+                out.writeByte(bucket.difficulty);
+                out.writeShort(0);
+                out.writeInt(bucket.size);
+                for (int i = 0; i < bucket.size; i++) {
+                    out.writeInt(bucket.records[i]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), indexFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Bucket getBucket(int grid, int difficulty, boolean create) {
+        Integer key = (grid << 8) | difficulty;
+        Bucket bucket = buckets.get(key);
+        if (bucket == null && create) {
+            bucket = new Bucket(grid, difficulty);
+            buckets.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    private static class Bucket {
+
+        private final int grid;
+        private final int difficulty;
+        private int[] records = new int[16];
+        private int size;
+
+        private Bucket(int grid, int difficulty) {
+            this.grid = grid;
+            this.difficulty = difficulty;
+        }
+
+        private void add(int record) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+            }
+            records[size++] = record;
+        }
+    }
+}
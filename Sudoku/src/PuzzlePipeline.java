@@ -0,0 +1,454 @@
+/**
+ *
+ * @author jithu
+ */
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Solves or validates a stream of puzzle lines (PuzzleFormat) of any
+// length with constant memory. The calling thread reads large chunks
+// straight into the input buffer of a batch, worker threads parse and
+// process whole batches, and a writer thread writes the results of the
+// batches in input order. A fixed set of batches circulates between
+// them, so reading stops while the workers or the output fall behind.
+//
+// Each input line gives one output line: the solution or "unsolvable"
+// when solving, "valid" or the first bad unit ("invalid row 3") when
+// validating with the rules of Sudoku.check, and "invalid" for lines
+// that are not a puzzle.
+public class PuzzlePipeline {
+
+    public static final int SOLVE = 0;
+    public static final int VALIDATE = 1;
+    // Input bytes and lines of a batch, a line longer than a whole batch
+    // is reported as invalid.
+    private static final int INPUT_CAPACITY = 1 << 18;
+    private static final int MAX_LINES = 4096;
+    // Longest result that is not a copy of the line, "invalid column 25".
+    private static final int MAX_MESSAGE = 24;
+    private static final byte[] INVALID = ascii("invalid");
+    private static final byte[] UNSOLVABLE = ascii("unsolvable");
+    private static final byte[] VALID = ascii("valid");
+    // Line status codes.
+    private static final int OK = 0;
+    private static final int BAD_LENGTH = 1;
+    private static final int BAD_CELL = 2;
+    private static final int TOO_LONG = 3;
+    private final int mode;
+    private final int numOfWorkers;
+    private final PrintStream errors;
+    private long numOfLines;
+    private long numOfErrors;
+
+    // Problem lines are reported to errors, which may be null.
+    public PuzzlePipeline(int mode, int numOfWorkers, PrintStream errors) {
+        if (mode != SOLVE && mode != VALIDATE) {
+            throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+        this.mode = mode;
+        this.numOfWorkers = Math.max(1, numOfWorkers);
+        this.errors = errors;
+    }
+
+    // Process every line of in and write the results to out. Returns the
+    // number of lines that were not a puzzle.
+    public long run(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        numOfLines = 0;
+        numOfErrors = 0;
+        int numOfBatches = 2 * numOfWorkers + 2;
+        BlockingQueue<Batch> free = new ArrayBlockingQueue<Batch>(numOfBatches);
+        BlockingQueue<Batch> work = new ArrayBlockingQueue<Batch>(numOfBatches + numOfWorkers);
+        BlockingQueue<Batch> written = new ArrayBlockingQueue<Batch>(numOfBatches + 1);
+        for (int i = 0; i < numOfBatches; i++) {
+            free.add(new Batch());
+        }
+
+        Thread[] workers = new Thread[numOfWorkers];
+        for (int i = 0; i < numOfWorkers; i++) {
+            workers[i] = new Thread(new Worker(work), "pipeline-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        Writer writer = new Writer(written, free, out);
+        Thread writerThread = new Thread(writer, "pipeline-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        try {
+            read(in, free, work, written, writer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } finally {
+            // An empty batch ends every worker and the writer.
+            Batch end = new Batch(0);
+            for (int i = 0; i < numOfWorkers; i++) {
+                work.add(end);
+            }
+            written.add(end);
+            joinQuietly(writerThread);
+            for (Thread worker : workers) {
+                joinQuietly(worker);
+            }
+        }
+        if (writer.failure != null) {
+            throw writer.failure;
+        }
+        return numOfErrors;
+    }
+
+    public long getNumOfLines() {
+        return numOfLines;
+    }
+
+    public long getNumOfErrors() {
+        return numOfErrors;
+    }
+
+    // Fill batches from the channel. The unfinished last line of a batch
+    // is moved to the start of the next one.
+    private void read(ReadableByteChannel in, BlockingQueue<Batch> free, BlockingQueue<Batch> work,
+            BlockingQueue<Batch> written, Writer writer) throws IOException, InterruptedException {
+        Batch batch = free.take();
+        batch.clear(1);
+        long nextLine = 1;
+        // Bytes before scanned are split into lines, the pending line
+        // starts at lineStart.
+        int scanned = 0;
+        int lineStart = 0;
+        // Bytes of an overlong line are dropped until its end.
+        boolean skipping = false;
+        boolean eof = false;
+        while (writer.failure == null) {
+            int requested = 0;
+            int read = 0;
+            if (!eof && batch.inputLength < INPUT_CAPACITY) {
+                ByteBuffer buffer = batch.inputBuffer;
+                buffer.limit(INPUT_CAPACITY).position(batch.inputLength);
+                requested = buffer.remaining();
+                read = in.read(buffer);
+                if (read < 0) {
+                    eof = true;
+                    read = 0;
+                }
+                batch.inputLength += read;
+            }
+
+            int i = scanned;
+            while (i < batch.inputLength && batch.numOfLines < MAX_LINES) {
+                if (batch.input[i] == '\n') {
+                    if (skipping) {
+                        skipping = false;
+                    } else {
+                        batch.addLine(lineStart, i, OK);
+                    }
+                    lineStart = i + 1;
+                }
+                i++;
+            }
+            scanned = i;
+            boolean drained = eof && scanned == batch.inputLength;
+            if (skipping) {
+                batch.inputLength = lineStart;
+                scanned = lineStart;
+            } else if (drained && lineStart < batch.inputLength && batch.numOfLines < MAX_LINES) {
+                // Last line without a newline.
+                batch.addLine(lineStart, batch.inputLength, OK);
+                lineStart = batch.inputLength;
+            }
+            if (batch.numOfLines == 0 && lineStart > 0) {
+                // Only a skipped line ended, keep the pending bytes.
+                batch.inputLength -= lineStart;
+                scanned -= lineStart;
+                System.arraycopy(batch.input, lineStart, batch.input, 0, batch.inputLength);
+                lineStart = 0;
+            }
+            if (lineStart == 0 && batch.inputLength == INPUT_CAPACITY) {
+                // One line fills the whole batch, report it and skip the rest.
+                batch.addLine(0, 0, TOO_LONG);
+                skipping = true;
+                batch.inputLength = 0;
+                scanned = 0;
+            }
+
+            boolean full = batch.numOfLines == MAX_LINES || batch.inputLength == INPUT_CAPACITY;
+            if (batch.numOfLines > 0 && (full || drained || read < requested)) {
+                Batch next = free.take();
+                next.clear(nextLine + batch.numOfLines);
+                int tail = batch.inputLength - lineStart;
+                System.arraycopy(batch.input, lineStart, next.input, 0, tail);
+                next.inputLength = tail;
+                batch.inputLength = lineStart;
+                nextLine += batch.numOfLines;
+                written.put(batch);
+                work.put(batch);
+                batch = next;
+                scanned = 0;
+                lineStart = 0;
+            } else if (drained) {
+                break;
+            }
+        }
+        free.put(batch);
+    }
+
+    private void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+
+    private static final class Batch {
+
+        private final byte[] input;
+        private final ByteBuffer inputBuffer;
+        private int inputLength;
+        // Line k is input[lineStart[k] .. lineEnd[k]), without the newline.
+        private final int[] lineStart;
+        private final int[] lineEnd;
+        private final int[] status;
+        // Position of the bad character for BAD_CELL.
+        private final int[] detail;
+        private int numOfLines;
+        // Number of the first line in the whole input, counted from 1.
+        private long firstLine;
+        private final byte[] output;
+        private final ByteBuffer outputBuffer;
+        private int outputLength;
+        private boolean done;
+
+        private Batch() {
+            this(INPUT_CAPACITY);
+        }
+
+        private Batch(int capacity) {
+            int lines = capacity == 0 ? 0 : MAX_LINES;
+            input = new byte[capacity];
+            inputBuffer = ByteBuffer.wrap(input);
+            lineStart = new int[lines];
+            lineEnd = new int[lines];
+            status = new int[lines];
+            detail = new int[lines];
+            // A result is at most as long as its line or a short message.
+            output = new byte[capacity + lines * (MAX_MESSAGE + 1)];
+            outputBuffer = ByteBuffer.wrap(output);
+        }
+
+        private void clear(long firstLine) {
+            this.firstLine = firstLine;
+            inputLength = 0;
+            numOfLines = 0;
+            outputLength = 0;
+            synchronized (this) {
+                done = false;
+            }
+        }
+
+        private void addLine(int start, int end, int lineStatus) {
+            lineStart[numOfLines] = start;
+            lineEnd[numOfLines] = end;
+            status[numOfLines] = lineStatus;
+            numOfLines++;
+        }
+
+        private void append(byte[] bytes) {
+            System.arraycopy(bytes, 0, output, outputLength, bytes.length);
+            outputLength += bytes.length;
+        }
+
+        private synchronized void markDone() {
+            done = true;
+            notifyAll();
+        }
+
+        private synchronized void awaitDone() throws InterruptedException {
+            while (!done) {
+                wait();
+            }
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        private final BlockingQueue<Batch> work;
+        // Digits of the current line and its solution, big enough for any grid.
+        private final int[] cells;
+        private final int[] solved;
+        private final SudokuSolver[] solvers = new SudokuSolver[32];
+        private final byte[][][] unitNames = new byte[32][][];
+
+        private Worker(BlockingQueue<Batch> work) {
+            this.work = work;
+            int maxCells = BoardGeometry.GRID_25X25.getCellCount();
+            cells = new int[maxCells];
+            solved = new int[maxCells];
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    Batch batch = work.take();
+                    if (batch.input.length == 0) {
+                        return;
+                    }
+                    for (int k = 0; k < batch.numOfLines; k++) {
+                        process(batch, k);
+                    }
+                    batch.markDone();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void process(Batch batch, int k) {
+            if (batch.status[k] != OK) {
+                batch.append(INVALID);
+                batch.output[batch.outputLength++] = '\n';
+                return;
+            }
+            int start = batch.lineStart[k];
+            int end = batch.lineEnd[k];
+            // Trim spaces and a trailing carriage return.
+            while (start < end && batch.input[start] <= ' ') {
+                start++;
+            }
+            while (end > start && batch.input[end - 1] <= ' ') {
+                end--;
+            }
+            int grid = PuzzleFormat.getGrid(end - start);
+            if (grid < 0) {
+                batch.status[k] = BAD_LENGTH;
+                batch.detail[k] = end - start;
+            } else {
+                for (int i = start; i < end; i++) {
+                    int digit = PuzzleFormat.toDigit((char) batch.input[i]);
+                    if (digit < 0 || digit > grid) {
+                        batch.status[k] = BAD_CELL;
+                        batch.detail[k] = i - start;
+                        break;
+                    }
+                    cells[i - start] = digit;
+                }
+            }
+            if (batch.status[k] != OK) {
+                batch.append(INVALID);
+            } else if (mode == SOLVE) {
+                solve(batch, grid);
+            } else {
+                validate(batch, grid);
+            }
+            batch.output[batch.outputLength++] = '\n';
+        }
+
+        private void solve(Batch batch, int grid) {
+            if (solvers[grid] == null) {
+                solvers[grid] = new SudokuSolver(grid);
+            }
+            if (!solvers[grid].solve(cells, solved)) {
+                batch.append(UNSOLVABLE);
+                return;
+            }
+            int cellCount = grid * grid;
+            for (int i = 0; i < cellCount; i++) {
+                batch.output[batch.outputLength + i] = (byte) PuzzleFormat.toChar(solved[i]);
+            }
+            batch.outputLength += cellCount;
+        }
+
+        private void validate(Batch batch, int grid) {
+            BoardGeometry geometry = BoardGeometry.of(grid);
+            int unit = SudokuValidator.findInvalidUnit(cells, geometry);
+            if (unit == SudokuValidator.VALID) {
+                batch.append(VALID);
+                return;
+            }
+            if (unitNames[grid] == null) {
+                unitNames[grid] = new byte[geometry.getNumOfUnits()][];
+                for (int u = 0; u < unitNames[grid].length; u++) {
+                    unitNames[grid][u] = ascii("invalid " + SudokuValidator.describe(u, grid));
+                }
+            }
+            batch.append(unitNames[grid][unit]);
+        }
+    }
+
+    private final class Writer implements Runnable {
+
+        private final BlockingQueue<Batch> written;
+        private final BlockingQueue<Batch> free;
+        private final WritableByteChannel out;
+        private volatile IOException failure;
+
+        private Writer(BlockingQueue<Batch> written, BlockingQueue<Batch> free, WritableByteChannel out) {
+            this.written = written;
+            this.free = free;
+            this.out = out;
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    Batch batch = written.take();
+                    if (batch.input.length == 0) {
+                        return;
+                    }
+                    batch.awaitDone();
+                    if (failure == null) {
+                        write(batch);
+                    }
+                    free.put(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void write(Batch batch) {
+            numOfLines += batch.numOfLines;
+            for (int k = 0; k < batch.numOfLines; k++) {
+                if (batch.status[k] != OK) {
+                    numOfErrors++;
+                    if (errors != null) {
+                        errors.println("line " + (batch.firstLine + k) + ": " + describe(batch, k));
+                    }
+                }
+            }
+            ByteBuffer buffer = batch.outputBuffer;
+            buffer.limit(batch.outputLength).position(0);
+            try {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        private String describe(Batch batch, int k) {
+            switch (batch.status[k]) {
+                case BAD_LENGTH:
+                    return "A puzzle line can not have " + batch.detail[k] + " characters";
+                case BAD_CELL:
+                    return "Invalid cell at " + (batch.detail[k] + 1);
+                default:
+                    return "Line longer than " + INPUT_CAPACITY + " characters";
+            }
+        }
+    }
+}
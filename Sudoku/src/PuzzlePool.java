@@ -0,0 +1,145 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps a few ready made puzzles for every (grid, gameMode) so a new game
+// does not wait for generation. When a pool drops to the low watermark a
+// background worker fills it up to the high watermark again. Only the
+// pairs passed to prefill get a pool, polling any other one is a miss,
+// so callers can not make it grow.
+public class PuzzlePool {
+
+    public static final int DEFAULT_LOW_WATERMARK = 2;
+    public static final int DEFAULT_HIGH_WATERMARK = 8;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final ConcurrentHashMap<Long, Pool> pools = new ConcurrentHashMap<Long, Pool>();
+    private final ExecutorService workers;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+
+    public PuzzlePool() {
+        this(DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK,
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    }
+
+    public PuzzlePool(int lowWatermark, int highWatermark, int numOfWorkers) {
+        if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+            throw new IllegalArgumentException("Invalid watermarks " + lowWatermark + "/" + highWatermark);
+        }
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.workers = Executors.newFixedThreadPool(numOfWorkers, new ThreadFactory() {
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "puzzle-pool");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    // Take a ready puzzle, returns null if none is available yet.
+    public int[][] poll(int grid, int gameMode) {
+        Pool pool = pools.get(keyOf(grid, gameMode));
+        if (pool == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        int[][] puzzle = pool.puzzles.poll();
+        if (puzzle == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        if (pool.puzzles.size() <= lowWatermark) {
+            refill(pool);
+        }
+        return puzzle;
+    }
+
+    // Start filling the pool for a grid and game mode ahead of use.
+    public void prefill(int grid, int gameMode) {
+        refill(getPool(grid, gameMode));
+    }
+
+    public int size(int grid, int gameMode) {
+        Pool pool = pools.get(keyOf(grid, gameMode));
+        return pool == null ? 0 : pool.puzzles.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getGenerated() {
+        return generated.get();
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private Pool getPool(int grid, int gameMode) {
+        Long key = keyOf(grid, gameMode);
+        Pool pool = pools.get(key);
+        if (pool == null) {
+            pools.putIfAbsent(key, new Pool(grid, gameMode, highWatermark));
+            pool = pools.get(key);
+        }
+        return pool;
+    }
+
+    private static Long keyOf(int grid, int gameMode) {
+        return ((long) grid << 32) | (gameMode & 0xffffffffL);
+    }
+
+    // At most one worker fills a pool at a time.
+    private void refill(final Pool pool) {
+        if (!pool.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        workers.execute(new Runnable() {
+
+            public void run() {
+                try {
+                    Sudoku sudoku = new Sudoku();
+                    while (pool.puzzles.size() < highWatermark && !Thread.currentThread().isInterrupted()) {
+                        pool.puzzles.offer(sudoku.getNewPuzzle(pool.grid, pool.gameMode));
+                        generated.incrementAndGet();
+                    }
+                } finally {
+                    pool.refilling.set(false);
+                }
+            }
+        });
+    }
+
+    private static class Pool {
+
+        private final int grid;
+        private final int gameMode;
+        private final ArrayBlockingQueue<int[][]> puzzles;
+        private final AtomicBoolean refilling = new AtomicBoolean();
+
+        private Pool(int grid, int gameMode, int capacity) {
+            this.grid = grid;
+            this.gameMode = gameMode;
+            this.puzzles = new ArrayBlockingQueue<int[][]>(capacity);
+        }
+    }
+}
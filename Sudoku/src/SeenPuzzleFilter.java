@@ -0,0 +1,313 @@
+/**
+ *
+ * @author jithu
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Puzzles handed out before, across sessions: a Bloom filter in a memory
+// mapped file. A puzzle goes in by the hash of its canonical form, so a
+// puzzle that is only a shuffled copy of an old one counts as seen. The
+// bits stay off the heap and the file keeps its size however many
+// puzzles are added; with more puzzles than it was made for the false
+// positive rate goes up.
+//
+// All bits of a puzzle lie in one 64 byte block, one cache line and one
+// page to touch per lookup; that costs a little over the plain filter's
+// false positive rate. Bits are only ever set. On Java 9 and later a
+// set is a compare and set on the mapped word, so adds from any number
+// of threads take no lock; on Java 8 they lock one of LOCK_STRIPES
+// stripes. Lookups never lock, a lookup racing an add of the same puzzle
+// may miss it.
+//
+// File layout (big endian):
+//   header, HEADER_SIZE bytes:
+//     int   MAGIC
+//     short VERSION
+//     short bits set per puzzle
+//     long  number of blocks
+//     reserved up to HEADER_SIZE
+//   blocks of BLOCK_BYTES bytes
+public class SeenPuzzleFilter {
+
+    public static final int MAGIC = 0x53444B53; // "SDKS"
+    public static final short VERSION = 1;
+    // A whole block, so blocks stay aligned to cache lines.
+    public static final int HEADER_SIZE = 64;
+    public static final int BLOCK_BYTES = 64;
+    private static final int BLOCK_BITS = 8 * BLOCK_BYTES;
+    private static final int MAX_HASHES = 16;
+    // Mappings are limited to 2GB, large filters use several segments.
+    private static final int SEGMENT_SHIFT = 24;
+    private static final long SEGMENT_BLOCKS = 1L << SEGMENT_SHIFT;
+    private static final int LOCK_STRIPES = 64;
+    // Compare and set of a long in a byte buffer, null before Java 9.
+    private static final MethodHandle COMPARE_AND_SET = compareAndSetHandle();
+    // Canonicalizers of the current thread by grid size.
+    private static final ThreadLocal<Canonicalizer[]> CANONICALIZERS = new ThreadLocal<Canonicalizer[]>() {
+
+        @Override
+        protected Canonicalizer[] initialValue() {
+            return new Canonicalizer[BoardGeometry.GRID_25X25.getSize() + 1];
+        }
+    };
+    private final RandomAccessFile file;
+    private final int hashCount;
+    private final long numOfBlocks;
+    private final MappedByteBuffer[] segments;
+    private final Object[] locks;
+
+    private SeenPuzzleFilter(RandomAccessFile file, int hashCount, long numOfBlocks) throws IOException {
+        this.file = file;
+        this.hashCount = hashCount;
+        this.numOfBlocks = numOfBlocks;
+        FileChannel channel = file.getChannel();
+        int numOfSegments = (int) ((numOfBlocks + SEGMENT_BLOCKS - 1) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[numOfSegments];
+        for (int i = 0; i < numOfSegments; i++) {
+            long first = (long) i << SEGMENT_SHIFT;
+            long blocks = Math.min(SEGMENT_BLOCKS, numOfBlocks - first);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_SIZE + first * BLOCK_BYTES, blocks * BLOCK_BYTES);
+        }
+        if (COMPARE_AND_SET == null) {
+            locks = new Object[LOCK_STRIPES];
+            for (int i = 0; i < LOCK_STRIPES; i++) {
+                locks[i] = new Object();
+            }
+        } else {
+            locks = null;
+        }
+    }
+
+    // Open the filter in a file, or create it sized for expectedPuzzles at
+    // the false positive rate. An existing file keeps the size it was
+    // created with.
+    public static SeenPuzzleFilter open(File filterFile, long expectedPuzzles, double falsePositiveRate)
+            throws IOException {
+        if (expectedPuzzles <= 0 || !(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Invalid filter size " + expectedPuzzles + " at " + falsePositiveRate);
+        }
+        if (filterFile.exists()) {
+            return open(filterFile);
+        }
+        File parent = filterFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent);
+        }
+        // Sized as a plain filter first, then grown until the blocks, some
+        // fuller than others, make the rate.
+        double bitsPerPuzzle = -Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        int hashCount = (int) Math.max(1, Math.min(MAX_HASHES, Math.round(bitsPerPuzzle * Math.log(2))));
+        long numOfBlocks = Math.max(1, (long) Math.ceil(expectedPuzzles * bitsPerPuzzle / BLOCK_BITS));
+        while (falsePositiveRate((double) expectedPuzzles / numOfBlocks, hashCount) > falsePositiveRate) {
+            numOfBlocks += numOfBlocks / 32 + 1;
+        }
+        RandomAccessFile file = new RandomAccessFile(filterFile, "rw");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort(VERSION);
+            header.putShort((short) hashCount);
+            header.putLong(numOfBlocks);
+            header.clear();
+            file.setLength(HEADER_SIZE + numOfBlocks * BLOCK_BYTES);
+            FileChannel channel = file.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            return new SeenPuzzleFilter(file, hashCount, numOfBlocks);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    // Open an existing filter.
+    public static SeenPuzzleFilter open(File filterFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(filterFile, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            int read = channel.read(header, 0);
+            header.flip();
+            if (read < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(filterFile + " is not a seen puzzle filter");
+            }
+            short version = header.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported seen puzzle filter version " + version);
+            }
+            int hashCount = header.getShort();
+            long numOfBlocks = header.getLong();
+            if (hashCount < 1 || hashCount > MAX_HASHES || numOfBlocks < 1
+                    || channel.size() < HEADER_SIZE + numOfBlocks * BLOCK_BYTES) {
+                throw new IOException(filterFile + " is truncated");
+            }
+            return new SeenPuzzleFilter(file, hashCount, numOfBlocks);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    // Symmetry independent 64 bit hash of a puzzle, see Canonicalizer.
+    public static long hashOf(int[][] puzzle) {
+        if (!BoardGeometry.isSupported(puzzle.length)) {
+            throw new IllegalArgumentException("Unsupported grid " + puzzle.length);
+        }
+        Canonicalizer[] canonicalizers = CANONICALIZERS.get();
+        Canonicalizer canonicalizer = canonicalizers[puzzle.length];
+        if (canonicalizer == null) {
+            canonicalizer = new Canonicalizer(puzzle.length);
+            canonicalizers[puzzle.length] = canonicalizer;
+        }
+        return canonicalizer.hash(puzzle);
+    }
+
+    // False if the puzzle, or one equivalent to it, was surely never added.
+    public boolean mightContain(int[][] puzzle) {
+        return mightContain(hashOf(puzzle));
+    }
+
+    // Add a puzzle. Returns true if it was surely not there before, false
+    // if it probably was.
+    public boolean add(int[][] puzzle) {
+        return add(hashOf(puzzle));
+    }
+
+    public boolean mightContain(long hash) {
+        long block = block(hash);
+        MappedByteBuffer segment = segments[(int) (block >>> SEGMENT_SHIFT)];
+        int offset = (int) (block & (SEGMENT_BLOCKS - 1)) * BLOCK_BYTES;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = bit(hash, i);
+            if ((segment.getLong(offset + (bit >>> 6) * 8) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean add(long hash) {
+        long block = block(hash);
+        MappedByteBuffer segment = segments[(int) (block >>> SEGMENT_SHIFT)];
+        int offset = (int) (block & (SEGMENT_BLOCKS - 1)) * BLOCK_BYTES;
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = bit(hash, i);
+            added |= setBit(segment, offset + (bit >>> 6) * 8, 1L << bit, block);
+        }
+        return added;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    // Size of the bit array in bytes.
+    public long getByteSize() {
+        return numOfBlocks * BLOCK_BYTES;
+    }
+
+    // Write the added puzzles to the disk, the system does it eventually
+    // anyway.
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    public void close() throws IOException {
+        force();
+        file.close();
+    }
+
+    // Set a bit of the word at index, true if it was not set.
+    private boolean setBit(MappedByteBuffer segment, int index, long mask, long block) {
+        long word = segment.getLong(index);
+        if ((word & mask) != 0) {
+            return false;
+        }
+        if (COMPARE_AND_SET == null) {
+            synchronized (locks[(int) (block & (LOCK_STRIPES - 1))]) {
+                word = segment.getLong(index);
+                segment.putLong(index, word | mask);
+                return (word & mask) == 0;
+            }
+        }
+        ByteBuffer buffer = segment;
+        try {
+            while (!(boolean) COMPARE_AND_SET.invokeExact(buffer, index, word, word | mask)) {
+                word = segment.getLong(index);
+                if ((word & mask) != 0) {
+                    return false;
+                }
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        return true;
+    }
+
+    // Expected false positive rate with puzzlesPerBlock on average: the
+    // puzzles in a block are Poisson distributed, the rate of a block is
+    // that of a plain filter of BLOCK_BITS bits.
+    static double falsePositiveRate(double puzzlesPerBlock, int hashCount) {
+        double rate = 0;
+        double probability = Math.exp(-puzzlesPerBlock);
+        int last = (int) (puzzlesPerBlock + 10 * Math.sqrt(puzzlesPerBlock)) + 10;
+        for (int puzzles = 0; puzzles <= last; puzzles++) {
+            double unset = Math.pow(1 - 1.0 / BLOCK_BITS, (double) puzzles * hashCount);
+            rate += probability * Math.pow(1 - unset, hashCount);
+            probability *= puzzlesPerBlock / (puzzles + 1);
+        }
+        return rate;
+    }
+
+    // Bits come from hashes of the hash, the canonical hash itself is a
+    // plain FNV hash and not spread well enough.
+    private long block(long hash) {
+        return Long.remainderUnsigned(mix(hash), numOfBlocks);
+    }
+
+    // The i-th bit in the block. Each from its own hash, bits stepped
+    // from one start fill a block unevenly.
+    private static int bit(long hash, int i) {
+        return (int) mix(hash + (i + 1) * 0x9e3779b97f4a7c15L) & (BLOCK_BITS - 1);
+    }
+
+    // SplitMix64 finalizer.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // MethodHandles.byteBufferViewVarHandle exists from Java 9 on, the
+    // project still compiles for older versions. The invoker is bound to
+    // the VarHandle and takes (ByteBuffer, int, long, long).
+    private static MethodHandle compareAndSetHandle() {
+        try {
+            Class<?> accessMode = Class.forName("java.lang.invoke.VarHandle$AccessMode");
+            Method view = MethodHandles.class.getMethod("byteBufferViewVarHandle", Class.class, ByteOrder.class);
+            Object words = view.invoke(null, long[].class, ByteOrder.BIG_ENDIAN);
+            Method invoker = MethodHandles.class.getMethod("varHandleExactInvoker", accessMode, MethodType.class);
+            MethodHandle compareAndSet = (MethodHandle) invoker.invoke(null,
+                    accessMode.getField("COMPARE_AND_SET").get(null),
+                    MethodType.methodType(boolean.class, ByteBuffer.class, int.class, long.class, long.class));
+            return compareAndSet.bindTo(words);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ *
+ * @author jithu
+ */
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight recorder event of one round of shuffling a solved board.
+@Name("sudoku.Shuffle")
+@Label("Board Shuffle")
+@Category("Sudoku")
+@Description("One round of row, column, box and digit swaps in Sudoku.createBoard")
+@StackTrace(false)
+public class ShuffleEvent extends jdk.jfr.Event {
+
+    @Label("Grid")
+    int grid;
+    @Label("Round")
+    int round;
+}
@@ -0,0 +1,165 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Times DancingLinks against the bitmask SudokuSolver on the same puzzles
+// for every grid size, to pick the engine per size. The first table solves
+// puzzles with random holes. The second times what generation asks of a
+// solver: after every clue removal of a generated puzzle, whether another
+// solution appears, hasSolutionWithout against a count up to two.
+//   java -cp Sudoku.jar SolverComparison [puzzles per size]
+public class SolverComparison {
+
+    private static final BoardGeometry[] SHAPES = {
+        BoardGeometry.GRID_6X6, BoardGeometry.GRID_9X9, BoardGeometry.GRID_12X12,
+        BoardGeometry.GRID_16X16, BoardGeometry.GRID_25X25};
+    // Share of empty cells in percent for every shape.
+    private static final int[] EMPTY_PERCENT = {75, 75, 65, 55, 40};
+    // Well known hard 9x9 puzzles.
+    private static final String[] HARD_9X9 = {
+        "8..........36......7..9.2...5...7.......457.....1...3...1....68..85...1..9....4..",
+        "1....7.9..3..2...8..96..5....53..9...1..8...26....4...3......1..4......7..7...3..",
+        "..............3.85..1.2.......5.7.....4...1...9.......5......73..2.1........4...9",
+        "4.....8.5.3..........7......2.....6.....8.4......1.......6.3.7.5..2.....1.4......"};
+    private static final int ROUNDS = 5;
+    // Grids the generator makes puzzles for with a uniqueness check.
+    private static final int[] GENERATED = {
+        Sudoku.GRID_6X6, Sudoku.GRID_9X9, Sudoku.GRID_12X12, Sudoku.GRID_16X16};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        SplittableRandom random = new SplittableRandom(42);
+        System.out.println("grid  puzzles  bitmask median us  dlx median us  bitmask max us  dlx max us");
+        for (int s = 0; s < SHAPES.length; s++) {
+            int[][][] puzzles = new int[count][][];
+            for (int i = 0; i < count; i++) {
+                puzzles[i] = makePuzzle(SHAPES[s], EMPTY_PERCENT[s], random);
+            }
+            compare(SHAPES[s].toString(), puzzles, SHAPES[s]);
+        }
+        int[][][] hard = new int[HARD_9X9.length][][];
+        for (int i = 0; i < hard.length; i++) {
+            hard[i] = PuzzleFormat.parse(HARD_9X9[i]);
+        }
+        compare("9x9 hard", hard, BoardGeometry.GRID_9X9);
+
+        System.out.println();
+        System.out.println("grid  puzzles  bitmask median ms  dlx median ms  bitmask max us  dlx max us  (clue removal checks)");
+        Sudoku sudoku = new Sudoku(new SplittableRandom(42));
+        for (int grid : GENERATED) {
+            int[][][] puzzles = new int[Math.max(1, count / 5)][][];
+            for (int i = 0; i < puzzles.length; i++) {
+                puzzles[i] = sudoku.getNewPuzzle(grid, Sudoku.GAME_MODE_MEDIUM);
+            }
+            compareRemovals(grid + "x" + grid, puzzles, BoardGeometry.of(grid));
+        }
+    }
+
+    private static void compare(String name, int[][][] puzzles, BoardGeometry geometry) {
+        SudokuSolver bitmask = new SudokuSolver(geometry);
+        DancingLinks dlx = new DancingLinks(geometry);
+        long[] bitmaskTimes = new long[puzzles.length];
+        long[] dlxTimes = new long[puzzles.length];
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < puzzles.length; i++) {
+                long start = System.nanoTime();
+                int[][] a = bitmask.solve(puzzles[i]);
+                long middle = System.nanoTime();
+                int[][] b = dlx.solve(puzzles[i]);
+                long end = System.nanoTime();
+                if (a == null || b == null) {
+                    throw new IllegalStateException("No solution for " + name + " puzzle " + i);
+                }
+                // Keep the best of all rounds, the first ones run before JIT.
+                bitmaskTimes[i] = round == 0 ? middle - start : Math.min(bitmaskTimes[i], middle - start);
+                dlxTimes[i] = round == 0 ? end - middle : Math.min(dlxTimes[i], end - middle);
+            }
+        }
+        Arrays.sort(bitmaskTimes);
+        Arrays.sort(dlxTimes);
+        int median = puzzles.length / 2;
+        int last = puzzles.length - 1;
+        System.out.printf("%-8s %7d  %17.1f  %13.1f  %14.1f  %10.1f%n", name, puzzles.length,
+                bitmaskTimes[median] / 1e3, dlxTimes[median] / 1e3, bitmaskTimes[last] / 1e3, dlxTimes[last] / 1e3);
+    }
+
+    // Every clue of every puzzle emptied in turn and checked for another
+    // solution, reports the time of all checks of a puzzle and the
+    // slowest single check.
+    private static void compareRemovals(String name, int[][][] puzzles, BoardGeometry geometry) {
+        int size = geometry.getSize();
+        SudokuSolver bitmask = new SudokuSolver(geometry);
+        DancingLinks dlx = new DancingLinks(geometry);
+        long[] bitmaskTimes = new long[puzzles.length];
+        long[] dlxTimes = new long[puzzles.length];
+        long bitmaskMax = 0;
+        long dlxMax = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < puzzles.length; i++) {
+                int[][] puzzle = puzzles[i];
+                long bitmaskTime = 0;
+                long dlxTime = 0;
+                for (int cell = 0; cell < size * size; cell++) {
+                    int row = cell / size;
+                    int col = cell % size;
+                    int value = puzzle[row][col];
+                    if (value == 0) {
+                        continue;
+                    }
+                    puzzle[row][col] = 0;
+                    long start = System.nanoTime();
+                    boolean a = bitmask.hasSolutionWithout(puzzle, row, col, value);
+                    long middle = System.nanoTime();
+                    boolean b = dlx.countSolutions(puzzle, 2) > 1;
+                    long end = System.nanoTime();
+                    puzzle[row][col] = value;
+                    if (a != b) {
+                        throw new IllegalStateException("Engines disagree on " + name + " puzzle " + i);
+                    }
+                    bitmaskTime += middle - start;
+                    dlxTime += end - middle;
+                    if (round == ROUNDS - 1) {
+                        bitmaskMax = Math.max(bitmaskMax, middle - start);
+                        dlxMax = Math.max(dlxMax, end - middle);
+                    }
+                }
+                bitmaskTimes[i] = round == 0 ? bitmaskTime : Math.min(bitmaskTimes[i], bitmaskTime);
+                dlxTimes[i] = round == 0 ? dlxTime : Math.min(dlxTimes[i], dlxTime);
+            }
+        }
+        Arrays.sort(bitmaskTimes);
+        Arrays.sort(dlxTimes);
+        int median = puzzles.length / 2;
+        System.out.printf("%-8s %7d  %17.2f  %13.2f  %14.1f  %10.1f%n", name, puzzles.length,
+                bitmaskTimes[median] / 1e6, dlxTimes[median] / 1e6, bitmaskMax / 1e3, dlxMax / 1e3);
+    }
+
+    // Shuffled pattern solution with random cells emptied. Big grids are
+    // not checked for uniqueness, both engines look for the first solution.
+    // Around half empty cells random puzzles on 25x25 get too hard for
+    // either engine to finish in reasonable time.
+    private static int[][] makePuzzle(BoardGeometry geometry, int emptyPercent, SplittableRandom random) {
+        int size = geometry.getSize();
+        int[][] solved = geometry.createSolvedBoard();
+        int[] digits = new int[size];
+        for (int i = 0; i < size; i++) {
+            digits[i] = i + 1;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = digits[i];
+            digits[i] = digits[j];
+            digits[j] = temp;
+        }
+        int[][] puzzle = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                puzzle[i][j] = random.nextInt(100) < emptyPercent ? 0 : digits[solved[i][j] - 1];
+            }
+        }
+        return puzzle;
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ *
+ * @author jithu
+ */
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight recorder event of one SudokuSolver search. Generation runs
+// thousands of short ones, sudoku.jfc only records the slow ones.
+@Name("sudoku.Solver")
+@Label("Solver Search")
+@Category("Sudoku")
+@Description("One solve, solution count or uniqueness check of SudokuSolver")
+@StackTrace(false)
+public class SolverEvent extends jdk.jfr.Event {
+
+    @Label("Grid")
+    int grid;
+    @Label("Clues")
+    int clues;
+    @Label("Backtracks")
+    @Description("Search nodes visited")
+    long backtracks;
+    @Label("Solutions")
+    int solutions;
+}
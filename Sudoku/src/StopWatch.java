@@ -3,47 +3,66 @@
  * @author jithu
  */
 
+// Measures play time on the monotonic System.nanoTime clock, changes of
+// the wall clock (NTP, daylight saving) do not move it.
 public class StopWatch {
 
+    private static final long NANOS_PER_MILLI = 1000000L;
     private long startTime = 0;
     private long stopTime = 0;
-    private long pausedTime = 0;
     private boolean running = false;
+    private boolean paused = false;
 
     public void start() {
-        this.startTime = System.currentTimeMillis();
-        pausedTime = 0;
+        start(0);
+    }
+
+    // Start as if elapsed milliseconds had already passed, for a game
+    // that is continued.
+    public void start(long elapsed) {
+        this.startTime = System.nanoTime() - elapsed * NANOS_PER_MILLI;
+        this.stopTime = startTime;
         this.running = true;
+        this.paused = false;
     }
 
     public void stop() {
-        this.stopTime = System.currentTimeMillis();
+        if (running) {
+            this.stopTime = System.nanoTime();
+        }
         this.running = false;
+        this.paused = false;
     }
 
     public void pause() {
-        if(running) {
-            pausedTime = System.currentTimeMillis();
+        if (running) {
             stop();
+            paused = true;
         }
     }
 
+    // Continue after pause, the paused time is not counted.
     public void resume() {
-        if(!running){
-            long duration = System.currentTimeMillis() - pausedTime;
-            startTime += duration;
+        if (paused) {
+            startTime += System.nanoTime() - stopTime;
             this.running = true;
+            this.paused = false;
         }
     }
 
+    public boolean isRunning() {
+        return running;
+    }
+
     //elaspsed time in milliseconds
     public long getElapsedTime() {
-        long elapsed;
+        return getElapsedNanos() / NANOS_PER_MILLI;
+    }
+
+    public long getElapsedNanos() {
         if (running) {
-            elapsed = (System.currentTimeMillis() - startTime);
-        } else {
-            elapsed = (stopTime - startTime);
+            return System.nanoTime() - startTime;
         }
-        return elapsed;
+        return stopTime - startTime;
     }
 }
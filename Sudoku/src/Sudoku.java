@@ -3,7 +3,8 @@
  * @author jithu
  */
 import java.util.Arrays;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
 
 public class Sudoku {
 
@@ -27,6 +28,8 @@ public class Sudoku {
         {6, 1, 2, 3, 4, 5}};
     public static final int GRID_6X6 = 6;
     public static final int GRID_9X9 = 9;
+    public static final int GRID_12X12 = 12;
+    public static final int GRID_16X16 = 16;
     public static final int GAME_MODE_EXPART = 75;
     public static final int GAME_MODE_MEDIUM = 60;
     public static final int GAME_MODE_EASY = 50;
@@ -34,8 +37,50 @@ public class Sudoku {
     public static final int DEFAULT_TOLERANCE = 5;
     public static final String SET_VALUE_9X9 = "123456789";
     public static final String SET_VALUE_6X6 = "123456";
+    // Hardest technique a puzzle must need and may need, for easy, medium
+    // and expert. Small grids rarely need more than singles.
+    private static final int[] MIN_TECHNIQUE_9X9 = {
+        DifficultyRater.NAKED_SINGLE, DifficultyRater.HIDDEN_SINGLE, DifficultyRater.LOCKED_CANDIDATES};
+    private static final int[] MAX_TECHNIQUE_9X9 = {
+        DifficultyRater.HIDDEN_SINGLE, DifficultyRater.HIDDEN_TRIPLE, DifficultyRater.UNSOLVED};
+    private static final int[] MIN_TECHNIQUE_6X6 = {
+        DifficultyRater.NAKED_SINGLE, DifficultyRater.NAKED_SINGLE, DifficultyRater.HIDDEN_SINGLE};
+    private static final int[] MAX_TECHNIQUE_6X6 = {
+        DifficultyRater.NAKED_SINGLE, DifficultyRater.LOCKED_CANDIDATES, DifficultyRater.UNSOLVED};
+    // Limits for the clue removal search before settling for fewer empty blocks.
+    private static final int MAX_REFINE_ROUNDS = 200;
+    private static final int RESTORED_CLUES = 5;
+    // Most empty blocks in percent on the large grids, beyond it the
+    // uniqueness checks take seconds per puzzle.
+    private static final int MAX_EMPTY_PERCENT_12X12 = 68;
+    private static final int MAX_EMPTY_PERCENT_16X16 = 62;
+    // Puzzles drawn before one already seen is handed out anyway.
+    private static final int MAX_SEEN_ATTEMPTS = 8;
+    // Where the last puzzle came from, for GenerationEvent.
+    private static final String SOURCE_BANK = "bank";
+    private static final String SOURCE_POOL = "pool";
+    private static final String SOURCE_GENERATED = "generated";
     private int[][] puzzle;
-    private Random random = new Random();
+    // Every instance owns its random state, generators on different
+    // threads never share one.
+    private final SplittableRandom random;
+    private SudokuSolver solver;
+    private DifficultyRater rater;
+    private PuzzlePool puzzlePool;
+    private PuzzleBank puzzleBank;
+    private PuzzleIndex puzzleIndex;
+    private SeenPuzzleFilter seenPuzzles;
+    private String source;
+    // Solver search nodes since getNewPuzzle started.
+    private long searchNodes;
+
+    public Sudoku() {
+        this(new SplittableRandom());
+    }
+
+    public Sudoku(SplittableRandom random) {
+        this.random = random;
+    }
 
     // Create a copy of 2D array.
     private int[][] copyOf(int[][] original) {
@@ -70,19 +115,18 @@ public class Sudoku {
     // Swaping process for rows must be done same horizontal grid and
     // also for column swaping process must be in vertical grid.
     private int[][] swapRowsAndCols(int[][] board) {
-
-        int range = board.length == GRID_9X9 ? 7 : 5;
+        BoardGeometry geometry = BoardGeometry.of(board.length);
         // define number of rows per horizontal group.
-        int rowsInGrid = board.length == GRID_9X9 ? 3 : 2;
-        // For both 9X9 and and 9X6 number of columns in vertical grid is 3.
-        int colsInGrid = 3;
+        int rowsInGrid = geometry.getBoxRows();
+        // define number of columns per vertical group.
+        int colsInGrid = geometry.getBoxCols();
 
-        for (int a = 0; a < range; a += rowsInGrid) {
+        for (int a = 0; a < board.length; a += rowsInGrid) {
             int row[] = getTwoRanNum(a, rowsInGrid);
             swapRows(board, row[0], row[1]);
         }
 
-        for (int a = 0; a < range; a += colsInGrid) {
+        for (int a = 0; a < board.length; a += colsInGrid) {
             int[] col = getTwoRanNum(a, colsInGrid);
             swapCols(board, col[0], col[1]);
         }
@@ -91,21 +135,12 @@ public class Sudoku {
 
     // Swap only horizontal groups.
     private int[][] swapGrids(int[][] board) {
-        int firstgrid = 1 + random.nextInt(3);
-        int secondgrid = 1 + random.nextInt(3);
-        int numRowsInGrid = board.length == GRID_9X9 ? 3 : 2;
+        int numRowsInGrid = BoardGeometry.of(board.length).getBoxRows();
+        int[] grids = getTwoRanNum(0, board.length / numRowsInGrid);
 
-        if ((firstgrid == 1 && secondgrid == 2) || (firstgrid == 2 && secondgrid == 1)) {
+        if (grids[0] != grids[1]) {
             for (int i = 0; i < numRowsInGrid; i++) {
-                swapRows(board, i, i + numRowsInGrid);
-            }
-        } else if ((firstgrid == 2 && secondgrid == 3) || (firstgrid == 3 && secondgrid == 2)) {
-            for (int i = numRowsInGrid; i < numRowsInGrid * 2; i++) {
-                swapRows(board, i, i + numRowsInGrid);
-            }
-        } else if ((firstgrid == 1 && secondgrid == 3) || (firstgrid == 3 && secondgrid == 1)) {
-            for (int i = 0; i < numRowsInGrid; i++) {
-                swapRows(board, i, i + (numRowsInGrid * 2));
+                swapRows(board, grids[0] * numRowsInGrid + i, grids[1] * numRowsInGrid + i);
             }
         }
         return board;
@@ -136,25 +171,169 @@ public class Sudoku {
 
     // Create an validsudoku board.
     private int[][] createBoard(int[][] board) {
+        long startTime = SudokuMetrics.startTime();
         for (int i = 0; i < 10; i++) {
+            ShuffleEvent event = FlightEvents.isRecording() ? new ShuffleEvent() : null;
+            if (event != null) {
+                event.begin();
+            }
             swapRowsAndCols(board);
             swapGrids(board);
             swapNums(board);
+            if (event != null && event.shouldCommit()) {
+                event.grid = board.length;
+                event.round = i;
+                event.commit();
+            }
         }
+        SudokuMetrics.recordShuffle(board.length, startTime);
         return board;
     }
 
     // Hide some numbers to create puzzle.
+    // Cells are removed one at a time in a shuffled order and a removal is
+    // kept only if the puzzle still has exactly one solution and can be
+    // solved without techniques harder than the game mode allows.
     private int[][] createPuzzle(int[][] board, int mode) {
-        this.puzzle = copyOf(board);
+        ClueRemovalEvent event = FlightEvents.isRecording() ? new ClueRemovalEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        long startNodes = searchNodes;
         int numOfEmptyBlock = getNumberOfEmptyBlock(board, mode);
-        for (int i = 0; i < numOfEmptyBlock; i++) {
-            int[] rowcol = getTwoRanNum(0, board.length);
-            this.puzzle[rowcol[0]][rowcol[1]] = 0;
+        int minTechnique = getMinTechnique(board.length, mode);
+        int maxTechnique = getMaxTechnique(board.length, mode);
+        SudokuSolver solver = getSolver(board.length);
+        DifficultyRater rater = getRater(board.length);
+        int[][] best = copyOf(board);
+        int bestEmpty = removeClues(best, solver, rater, maxTechnique, numOfEmptyBlock);
+
+        // When every remaining clue is needed before enough blocks are empty,
+        // or the puzzle is too easy for the game mode, put a few clues back
+        // and remove again in a new order.
+        int rounds = 0;
+        for (; rounds < MAX_REFINE_ROUNDS; rounds++) {
+            if (bestEmpty == numOfEmptyBlock && rater.rate(best) >= minTechnique) {
+                break;
+            }
+            int[][] candidate = copyOf(best);
+            int empty = bestEmpty - restoreClues(candidate, board, RESTORED_CLUES);
+            empty += removeClues(candidate, solver, rater, maxTechnique, numOfEmptyBlock - empty);
+            if (empty >= bestEmpty) {
+                best = candidate;
+                bestEmpty = empty;
+            }
+        }
+        this.puzzle = best;
+        if (event != null && event.shouldCommit()) {
+            event.grid = board.length;
+            event.gameMode = mode;
+            event.clues = countClues(best);
+            event.backtracks = searchNodes - startNodes;
+            event.refineRounds = rounds;
+            event.commit();
         }
         return copyOf(this.puzzle);
     }
 
+    // Remove up to count clues keeping the solution unique and the rating
+    // at most maxTechnique, returns the number of clues actually removed.
+    private int removeClues(int[][] puzzle, SudokuSolver solver, DifficultyRater rater, int maxTechnique, int count) {
+        int[] order = shuffledCells(puzzle.length);
+        int removed = 0;
+        for (int i = 0; i < order.length && removed < count; i++) {
+            int row = order[i] / puzzle.length;
+            int col = order[i] % puzzle.length;
+            int value = puzzle[row][col];
+            if (value == 0) {
+                continue;
+            }
+            puzzle[row][col] = 0;
+            boolean needed = solver.hasSolutionWithout(puzzle, row, col, value);
+            searchNodes += solver.getNodeCount();
+            if (!needed && (maxTechnique == DifficultyRater.UNSOLVED || rater.rate(puzzle) <= maxTechnique)) {
+                removed++;
+            } else {
+                puzzle[row][col] = value;
+            }
+        }
+        return removed;
+    }
+
+    // Put back up to count random clues from the solved board,
+    // returns the number of clues restored.
+    private int restoreClues(int[][] puzzle, int[][] board, int count) {
+        int[] order = shuffledCells(puzzle.length);
+        int restored = 0;
+        for (int i = 0; i < order.length && restored < count; i++) {
+            int row = order[i] / puzzle.length;
+            int col = order[i] % puzzle.length;
+            if (puzzle[row][col] == 0) {
+                puzzle[row][col] = board[row][col];
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    // Cell indexes of a grid in random order.
+    private int[] shuffledCells(int grid) {
+        int[] order = new int[grid * grid];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+        return order;
+    }
+
+    private DifficultyRater getRater(int grid) {
+        if (rater == null || rater.getSize() != grid) {
+            rater = new DifficultyRater(grid);
+        }
+        return rater;
+    }
+
+    // The bitmask solver for every grid, DancingLinks solves faster but
+    // loses at the uniqueness check after a clue removal, see
+    // SolverComparison.
+    private SudokuSolver getSolver(int grid) {
+        if (solver == null || solver.getSize() != grid) {
+            solver = new SudokuSolver(grid);
+        }
+        return solver;
+    }
+
+    // A game mode is defined by the techniques needed to solve its puzzles,
+    // see DifficultyRater. The number of empty blocks below only sets how
+    // many clues the generator tries to remove. Grids up to 6x6 use the
+    // small grid techniques, larger ones the 9x9 techniques.
+    private int getMinTechnique(int grid, int mode) {
+        int[] techniques = grid <= GRID_6X6 ? MIN_TECHNIQUE_6X6 : MIN_TECHNIQUE_9X9;
+        return techniques[getModeLevel(mode)];
+    }
+
+    private int getMaxTechnique(int grid, int mode) {
+        int[] techniques = grid <= GRID_6X6 ? MAX_TECHNIQUE_6X6 : MAX_TECHNIQUE_9X9;
+        return techniques[getModeLevel(mode)];
+    }
+
+    // 0 for easy, 1 for medium and 2 for expert.
+    private int getModeLevel(int mode) {
+        if (mode < GAME_MODE_EASYER || GAME_MODE_EXPART < mode) {
+            return 1;
+        } else if (mode == GAME_MODE_EXPART) {
+            return 2;
+        } else if (mode >= GAME_MODE_MEDIUM) {
+            return 1;
+        }
+        return 0;
+    }
+
     // Define number of empty blocks according to game mode.
     private int getNumberOfEmptyBlock(int[][] board, int mode) {
         int numOfEmptyBlock = 0;
@@ -168,65 +347,176 @@ public class Sudoku {
         int tolerance = (int) Math.floor(((numOfBlock - numOfEmptyBlock) * 5) / 100);
         numOfEmptyBlock += random.nextInt(tolerance + 1); // to avoid negetive 
 
+        if (board.length == GRID_12X12) {
+            numOfEmptyBlock = Math.min(numOfEmptyBlock, MAX_EMPTY_PERCENT_12X12 * numOfBlock / 100);
+        } else if (board.length == GRID_16X16) {
+            numOfEmptyBlock = Math.min(numOfEmptyBlock, MAX_EMPTY_PERCENT_16X16 * numOfBlock / 100);
+        }
         return numOfEmptyBlock;
     }
 
     // Check Is the sollution correct or Incorrect.
     public boolean check(int[][] board) {
-        boolean isCorrect = true;
-        int numOfRowsInGrid = board.length == 9 ? 3 : 2;
-        final String setValues = board.length == 9 ? SET_VALUE_9X9 : SET_VALUE_6X6;
-        // check rows
-        for (int i = 0; i < board.length; i++) {
-            String set = setValues;
-            for (int j = 0; j < board.length; j++) {
-                set = set.replace("" + board[i][j], "");
-            }
-            if (!set.isEmpty()) {
-                isCorrect = false;
-                return isCorrect;
-            }
+        CheckEvent event = FlightEvents.isRecording() ? new CheckEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        long startTime = SudokuMetrics.startTime();
+        boolean valid = SudokuValidator.findInvalidUnit(board) == SudokuValidator.VALID;
+        SudokuMetrics.recordValidation(startTime);
+        if (event != null && event.shouldCommit()) {
+            event.grid = board.length;
+            event.clues = countClues(board);
+            event.valid = valid;
+            event.commit();
         }
+        return valid;
+    }
 
-        // check columns
-        for (int j = 0; j < board.length; j++) {
-            String set = setValues;
-            for (int i = 0; i < board.length; i++) {
-                set = set.replace("" + board[i][j], "");
-            }
-            if (!set.isEmpty()) {
-                isCorrect = false;
-                return isCorrect;
+    // Find the row, column or box that makes the sollution incorrect,
+    // see SudokuValidator.findInvalidUnit.
+    public int findInvalidUnit(int[][] board) {
+        return SudokuValidator.findInvalidUnit(board);
+    }
+
+    // Check a game in progress, the model keeps its conflicts counted so
+    // nothing is scanned.
+    public boolean check(BoardModel model) {
+        CheckEvent event = FlightEvents.isRecording() ? new CheckEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        long startTime = SudokuMetrics.startTime();
+        boolean solved = model.isSolved();
+        SudokuMetrics.recordValidation(startTime);
+        if (event != null && event.shouldCommit()) {
+            event.grid = model.getSize();
+            event.clues = countClues(model.getPuzzle());
+            event.valid = solved;
+            event.commit();
+        }
+        return solved;
+    }
+
+    public int findInvalidUnit(BoardModel model) {
+        return SudokuValidator.findInvalidUnit(model.snapshot(), model.getGeometry());
+    }
+
+    // Use ready made puzzles from the pool when there are any.
+    public void setPuzzlePool(PuzzlePool puzzlePool) {
+        this.puzzlePool = puzzlePool;
+    }
+
+    // Draw puzzles from a pre-generated bank when it has a matching one.
+    // A game mode takes the puzzles rated within its techniques, the
+    // index tells which records those are. See PuzzleIndex.open for the
+    // one stored next to the bank file.
+    public void setPuzzleBank(PuzzleBank puzzleBank, PuzzleIndex puzzleIndex) {
+        this.puzzleBank = puzzleBank;
+        this.puzzleIndex = puzzleIndex;
+    }
+
+    // Skip puzzles the filter has seen, also ones that are only a shuffled
+    // copy, and add the one handed out. The filter may be shared between
+    // instances on any threads.
+    public void setSeenPuzzles(SeenPuzzleFilter seenPuzzles) {
+        this.seenPuzzles = seenPuzzles;
+    }
+
+    public int[][] getNewPuzzle(int grid, int gameMode) {
+        GenerationEvent event = FlightEvents.isRecording() ? new GenerationEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        long startTime = SudokuMetrics.startTime();
+        searchNodes = 0;
+        int[][] next = nextPuzzle(grid, gameMode);
+        int attempts = 1;
+        if (seenPuzzles != null) {
+            // Adding is the check, it tells whether all bits were set.
+            while (!seenPuzzles.add(next) && attempts < MAX_SEEN_ATTEMPTS) {
+                next = nextPuzzle(grid, gameMode);
+                attempts++;
             }
         }
+        SudokuMetrics.recordGeneration(grid, gameMode, startTime);
+        if (event != null && event.shouldCommit()) {
+            event.grid = grid;
+            event.gameMode = gameMode;
+            event.clues = countClues(next);
+            event.backtracks = searchNodes;
+            event.source = source;
+            event.attempts = attempts;
+            event.commit();
+        }
+        return next;
+    }
 
-        //check Horizontal and vertical grids
-        for (int hg = 0; hg < board.length; hg += numOfRowsInGrid) {
-            for (int vg = 0; vg < board[0].length; vg += 3) {
-                String set = setValues;
-                for (int i = hg; i < (hg + numOfRowsInGrid); i++) {
-                    for (int j = vg; j < vg + 3; j++) {
-                        set = set.replace("" + board[i][j], "");
-                    }
-                }
-                if (!set.isEmpty()) {
-                    isCorrect = false;
-                    return isCorrect;
-                }
+    private int[][] nextPuzzle(int grid, int gameMode) {
+        if (puzzleBank != null) {
+            int[][] banked = drawFromBank(grid, gameMode);
+            if (banked != null) {
+                source = SOURCE_BANK;
+                this.puzzle = banked;
+                return copyOf(this.puzzle);
+            }
+        }
+        if (puzzlePool != null) {
+            int[][] pooled = puzzlePool.poll(grid, gameMode);
+            if (pooled != null) {
+                source = SOURCE_POOL;
+                this.puzzle = pooled;
+                return copyOf(this.puzzle);
             }
         }
+        source = SOURCE_GENERATED;
+        return generatePuzzle(grid, gameMode);
+    }
 
-        return isCorrect;
+    private int[][] drawFromBank(int grid, int gameMode) {
+        long record = puzzleIndex.draw(grid, getMinTechnique(grid, gameMode), getMaxTechnique(grid, gameMode), random);
+        // An index that does not fit its bank must not hand out another grid.
+        if (record < 0 || puzzleBank.getGrid(record) != grid) {
+            return null;
+        }
+        return puzzleBank.read(record);
     }
 
-    public int[][] getNewPuzzle(int grid, int gameMode) {
+    // The seed boards are shared by all instances, shuffle a copy. Other
+    // grids start from the pattern board of their geometry.
+    private int[][] generatePuzzle(int grid, int gameMode) {
         if (grid == GRID_9X9) {
-            return createPuzzle(createBoard(VALID_BOARD_9X9), gameMode);
+            return createPuzzle(createBoard(copyOf(VALID_BOARD_9X9)), gameMode);
         } else if (grid == GRID_6X6) {
-            return createPuzzle(createBoard(VALID_BOARD_6X6), gameMode);
+            return createPuzzle(createBoard(copyOf(VALID_BOARD_6X6)), gameMode);
+        } else if (BoardGeometry.isSupported(grid)) {
+            return createPuzzle(createBoard(BoardGeometry.of(grid).createSolvedBoard()), gameMode);
         }
 
-        return createPuzzle(createBoard(VALID_BOARD_9X9), gameMode);
+        return createPuzzle(createBoard(copyOf(VALID_BOARD_9X9)), gameMode);
+    }
+
+    // Generate count puzzles in parallel on the common fork-join pool.
+    public static int[][][] getNewPuzzles(int grid, int gameMode, int count) {
+        return getNewPuzzles(grid, gameMode, count, ForkJoinPool.commonPool());
+    }
+
+    public static int[][][] getNewPuzzles(int grid, int gameMode, int count, ForkJoinPool pool) {
+        int[][][] puzzles = new int[count][][];
+        pool.invoke(new PuzzleBatch(puzzles, 0, count, grid, gameMode, new SplittableRandom()));
+        return puzzles;
+    }
+
+    private static int countClues(int[][] board) {
+        int clues = 0;
+        for (int[] row : board) {
+            for (int digit : row) {
+                if (digit != 0) {
+                    clues++;
+                }
+            }
+        }
+        return clues;
     }
 
     public int[][] resetPuzzle() {
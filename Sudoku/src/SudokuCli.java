@@ -0,0 +1,422 @@
+/**
+ *
+ * @author jithu
+ */
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Headless commands, started from Main when it gets arguments:
+//   generate --grid 9 --mode 75 --count 100   new puzzles, one per line
+//            --bank file appends them to a PuzzleBank instead
+//   solve      solution of every puzzle line on stdin (or --input)
+//   validate   "valid" or the first bad unit of every solved board
+//   rate       hardest technique needed for every puzzle on stdin
+//   canon      canonical form of every puzzle on stdin, see Canonicalizer
+//   dedup      puzzles on stdin without the ones equivalent to an earlier one
+//   serve --port 8080   puzzle service over HTTP, see SudokuServer
+//              --seen file keeps it from repeating puzzles across restarts
+//              --bank file hands out puzzles of the bank first
+// Lines use PuzzleFormat. Work is spread over all cores (or --threads),
+// results are written in input order, solve and validate stream through
+// PuzzlePipeline. Nothing here touches AWT or Swing.
+public class SudokuCli {
+
+    private static final String USAGE = "Usage: java -jar Sudoku.jar <command> [options]\n"
+            + "  generate [--grid 9] [--mode 60|easy|medium|expert] [--count 1] [--seed n]\n"
+            + "  solve | validate | rate       read puzzle lines from stdin\n"
+            + "  canon | dedup                 canonical forms, puzzles unique up to symmetry\n"
+            + "  --input file --output file    solve or validate files instead of stdin/stdout\n"
+            + "  --threads n                   worker threads, all cores by default\n"
+            + "  serve [--port 8080]           answer /puzzle, /check and /solve on localhost\n"
+            + "  --seen file                   serve no puzzle twice, across restarts too\n"
+            + "  --bank file                   generate into a puzzle bank, serve from one\n"
+            + "Puzzle lines hold grid*grid cells: 1-9, A.. for 10 and up, '.' or '0' for empty.";
+    // Most lines processed at once, smaller batches go out as soon as the
+    // input has nothing more buffered.
+    private static final int MAX_BATCH = 4096;
+    // Lines one fork-join leaf handles.
+    private static final int THRESHOLD = 64;
+    // Puzzles the server's seen puzzle filter is made for, about 120MB.
+    private static final long SEEN_CAPACITY = 100000000L;
+    private static final double SEEN_FALSE_POSITIVES = 0.01;
+    private final PrintStream out;
+    private final PrintStream err;
+    private int grid = Sudoku.GRID_9X9;
+    private int gameMode = Sudoku.GAME_MODE_MEDIUM;
+    private int count = 1;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private SplittableRandom random = new SplittableRandom();
+    private String input;
+    private String output;
+    private int port = SudokuServer.DEFAULT_PORT;
+    private String seen;
+    private String bank;
+    private int errors;
+
+    public SudokuCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    // Run a command, returns the process exit code.
+    public static int run(String[] args) {
+        // System.out flushes on every line, batches are flushed here instead.
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+        try {
+            return new SudokuCli(out, System.err).execute(args);
+        } finally {
+            out.flush();
+        }
+    }
+
+    public int execute(String[] args) {
+        String command = args[0];
+        try {
+            parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            if ("generate".equals(command)) {
+                generate(pool);
+            } else if ("solve".equals(command)) {
+                pipe(PuzzlePipeline.SOLVE);
+            } else if ("validate".equals(command)) {
+                pipe(PuzzlePipeline.VALIDATE);
+            } else if ("rate".equals(command)) {
+                eachLine(pool, false);
+            } else if ("canon".equals(command)) {
+                eachLine(pool, true);
+            } else if ("dedup".equals(command)) {
+                dedup();
+            } else if ("serve".equals(command)) {
+                serve();
+            } else {
+                err.println(USAGE);
+                return 2;
+            }
+        } catch (IOException e) {
+            err.println("sudoku: " + e.getMessage());
+            return 1;
+        } finally {
+            pool.shutdown();
+        }
+        return errors == 0 ? 0 : 1;
+    }
+
+    private void parseOptions(String[] args) {
+        for (int i = 1; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            if ("--grid".equals(option)) {
+                grid = parseNumber(option, value);
+                if (!BoardGeometry.isSupported(grid)) {
+                    throw new IllegalArgumentException("Unsupported grid " + grid);
+                }
+            } else if ("--mode".equals(option)) {
+                gameMode = parseMode(value);
+            } else if ("--count".equals(option)) {
+                count = parseNumber(option, value);
+            } else if ("--threads".equals(option)) {
+                threads = Math.max(1, parseNumber(option, value));
+            } else if ("--input".equals(option)) {
+                input = value;
+            } else if ("--output".equals(option)) {
+                output = value;
+            } else if ("--seen".equals(option)) {
+                seen = value;
+            } else if ("--bank".equals(option)) {
+                bank = value;
+            } else if ("--port".equals(option)) {
+                port = parseNumber(option, value);
+            } else if ("--seed".equals(option)) {
+                random = new SplittableRandom(parseNumber(option, value));
+            } else {
+                throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (bank != null && grid > PuzzleBank.MAX_GRID) {
+            throw new IllegalArgumentException("A puzzle bank holds grids up to " + PuzzleBank.MAX_GRID);
+        }
+    }
+
+    private static int parseNumber(String option, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value " + value + " for " + option);
+        }
+    }
+
+    private static int parseMode(String value) {
+        if ("easy".equalsIgnoreCase(value)) {
+            return Sudoku.GAME_MODE_EASY;
+        } else if ("medium".equalsIgnoreCase(value)) {
+            return Sudoku.GAME_MODE_MEDIUM;
+        } else if ("expert".equalsIgnoreCase(value)) {
+            return Sudoku.GAME_MODE_EXPART;
+        }
+        return parseNumber("--mode", value);
+    }
+
+    // Generate in growing batches, the first one has a puzzle per thread
+    // so output starts as soon as possible. With --bank the puzzles are
+    // rated and appended to the bank, a new one has room for 9x9 or the
+    // grid.
+    private void generate(ForkJoinPool pool) throws IOException {
+        PuzzleBankWriter writer = bank == null ? null
+                : new PuzzleBankWriter(new File(bank), Math.max(Sudoku.GRID_9X9 * Sudoku.GRID_9X9, grid * grid));
+        DifficultyRater rater = bank == null ? null : new DifficultyRater(grid);
+        try {
+            int batch = threads;
+            int done = 0;
+            while (done < count) {
+                int size = Math.min(batch, count - done);
+                int[][][] puzzles = new int[size][][];
+                pool.invoke(new PuzzleBatch(puzzles, 0, size, grid, gameMode, random.split()));
+                for (int[][] puzzle : puzzles) {
+                    if (writer != null) {
+                        writer.append(puzzle, rater.rate(puzzle));
+                    } else {
+                        out.println(PuzzleFormat.format(puzzle));
+                    }
+                }
+                out.flush();
+                done += size;
+                batch = Math.min(2 * batch, MAX_BATCH);
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        if (writer != null) {
+            err.println("added " + count + " puzzles to " + bank);
+        }
+    }
+
+    // Solve or validate through the pipeline, files are read in large
+    // chunks and nothing is kept per line.
+    private void pipe(int mode) throws IOException {
+        FileChannel in = input == null
+                ? new FileInputStream(FileDescriptor.in).getChannel()
+                : FileChannel.open(Paths.get(input), StandardOpenOption.READ);
+        try {
+            FileChannel out = output == null
+                    ? new FileOutputStream(FileDescriptor.out).getChannel()
+                    : FileChannel.open(Paths.get(output), StandardOpenOption.WRITE,
+                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                errors += new PuzzlePipeline(mode, threads, err).run(in, out);
+            } finally {
+                if (output != null) {
+                    out.close();
+                }
+            }
+        } finally {
+            if (input != null) {
+                in.close();
+            }
+        }
+    }
+
+    // Serve until the process is stopped, only on the loopback interface.
+    private void serve() throws IOException {
+        final SudokuServer server = new SudokuServer("localhost", port);
+        final SeenPuzzleFilter seenPuzzles = seen == null ? null
+                : SeenPuzzleFilter.open(new File(seen), SEEN_CAPACITY, SEEN_FALSE_POSITIVES);
+        server.setSeenPuzzles(seenPuzzles);
+        if (bank != null) {
+            File bankFile = new File(bank);
+            PuzzleBank puzzleBank = new PuzzleBank(bankFile);
+            server.setPuzzleBank(puzzleBank, PuzzleIndex.open(bankFile, puzzleBank));
+            err.println(puzzleBank.size() + " puzzles in " + bank);
+        }
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+
+            @Override
+            public void run() {
+                server.stop(1);
+                if (seenPuzzles != null) {
+                    seenPuzzles.force();
+                }
+            }
+        });
+        err.println("Serving on http://localhost:" + server.getAddress().getPort()
+                + (server.usesVirtualThreads() ? " (virtual threads)" : ""));
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Rate or canonicalize stdin a batch at a time.
+    private void eachLine(ForkJoinPool pool, boolean canonical) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII), 1 << 16);
+        String[] lines = new String[MAX_BATCH];
+        String[] results = new String[MAX_BATCH];
+        long lineNumber = 0;
+        String line = in.readLine();
+        while (line != null) {
+            int size = 0;
+            while (line != null) {
+                lines[size++] = line;
+                if (size == MAX_BATCH || !in.ready()) {
+                    break;
+                }
+                line = in.readLine();
+            }
+            pool.invoke(new LineBatch(lines, results, 0, size, canonical));
+            for (int i = 0; i < size; i++) {
+                lineNumber++;
+                if (results[i] == null) {
+                    errors++;
+                    err.println("line " + lineNumber + ": " + errorOf(lines[i]));
+                    out.println("invalid");
+                } else {
+                    out.println(results[i]);
+                }
+            }
+            out.flush();
+            line = in.readLine();
+        }
+    }
+
+    // Echo every puzzle line not equivalent to an earlier one. The lines
+    // depend on each other, so this runs on one thread; it only works out
+    // canonical forms for puzzles whose fingerprints meet.
+    private void dedup() throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII), 1 << 16);
+        PuzzleDeduplicator deduplicator = new PuzzleDeduplicator();
+        long lineNumber = 0;
+        long kept = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            try {
+                if (deduplicator.add(PuzzleFormat.parse(line.trim()))) {
+                    kept++;
+                    out.println(line);
+                }
+            } catch (IllegalArgumentException e) {
+                errors++;
+                err.println("line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        err.println("kept " + kept + " of " + lineNumber + " lines");
+    }
+
+    private static String errorOf(String line) {
+        try {
+            PuzzleFormat.parse(line.trim());
+            return "invalid puzzle";
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    // Rating of one input line, null if the line is not a puzzle.
+    private static String rate(String line, DifficultyRater[] raters) {
+        int[][] puzzle;
+        try {
+            puzzle = PuzzleFormat.parse(line.trim());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (raters[0] == null || raters[0].getSize() != puzzle.length) {
+            raters[0] = new DifficultyRater(puzzle.length);
+        }
+        return DifficultyRater.getTechniqueName(raters[0].rate(puzzle));
+    }
+
+    // Canonical form of one input line, null if the line is not a puzzle.
+    private static String canon(String line, Canonicalizer[] canonicalizers) {
+        try {
+            int[][] puzzle = PuzzleFormat.parse(line.trim());
+            if (canonicalizers[0] == null || canonicalizers[0].getSize() != puzzle.length) {
+                canonicalizers[0] = new Canonicalizer(puzzle.length);
+            }
+            return canonicalizers[0].key(puzzle);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class LineBatch extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        // Rater of the current thread, it keeps state per rating.
+        private static final ThreadLocal<DifficultyRater[]> RATER = new ThreadLocal<DifficultyRater[]>() {
+
+            @Override
+            protected DifficultyRater[] initialValue() {
+                return new DifficultyRater[1];
+            }
+        };
+        // Canonicalizer of the current thread, it keeps scratch tables.
+        private static final ThreadLocal<Canonicalizer[]> CANONICALIZER = new ThreadLocal<Canonicalizer[]>() {
+
+            @Override
+            protected Canonicalizer[] initialValue() {
+                return new Canonicalizer[1];
+            }
+        };
+        private final String[] lines;
+        private final String[] results;
+        private final int from;
+        private final int to;
+        // Canonical forms instead of ratings.
+        private final boolean canonical;
+
+        private LineBatch(String[] lines, String[] results, int from, int to, boolean canonical) {
+            this.lines = lines;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.canonical = canonical;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                if (canonical) {
+                    Canonicalizer[] canonicalizers = CANONICALIZER.get();
+                    for (int i = from; i < to; i++) {
+                        results[i] = canon(lines[i], canonicalizers);
+                    }
+                    return;
+                }
+                DifficultyRater[] raters = RATER.get();
+                for (int i = from; i < to; i++) {
+                    results[i] = rate(lines[i], raters);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LineBatch(lines, results, from, middle, canonical),
+                    new LineBatch(lines, results, middle, to, canonical));
+        }
+    }
+}
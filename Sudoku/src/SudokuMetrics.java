@@ -0,0 +1,193 @@
+/**
+ *
+ * @author jithu
+ */
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// What the game does and how long it takes, for jconsole and any other
+// JMX client once register was called:
+//   Sudoku:type=Games                        games started, won and lost
+//   Sudoku:type=Generation,grid=9,mode=60    getNewPuzzle in nanoseconds
+//   Sudoku:type=Shuffle,grid=9               shuffling a solved board
+//   Sudoku:type=Validation                   checks of a board
+//   Sudoku:type=SolverNodes                  search nodes of every solve
+//   Sudoku:type=SolveTime,grid=9,mode=60     play time of won games, ms
+// Timed code takes startTime() before and passes it to the record call
+// after, so with metrics off (-Dsudoku.metrics=false or over JMX) the
+// clock is not even read. Recording is a LongHistogram record, plus a
+// map lookup for histograms kept per grid and mode.
+public final class SudokuMetrics implements SudokuMetricsMXBean {
+
+    public static final String DOMAIN = "Sudoku";
+    private static final SudokuMetrics INSTANCE = new SudokuMetrics();
+    private static volatile boolean enabled = !"false".equals(System.getProperty("sudoku.metrics"));
+    private static final Histograms GENERATION = new Histograms("Generation", "ns", true);
+    private static final Histograms SHUFFLE = new Histograms("Shuffle", "ns", false);
+    private static final Histograms SOLVE_TIME = new Histograms("SolveTime", "ms", true);
+    private static final LongHistogram VALIDATION = new LongHistogram("ns");
+    private static final LongHistogram SOLVER_NODES = new LongHistogram("nodes");
+    private static final LongAdder GAMES_STARTED = new LongAdder();
+    private static final LongAdder GAMES_WON = new LongAdder();
+    private static final LongAdder GAMES_LOST = new LongAdder();
+    // Set once registered, histograms made later register themselves.
+    private static boolean registered;
+
+    private SudokuMetrics() {
+    }
+
+    // Publish the metrics on the platform MBean server. Only the window
+    // and the server do, batch commands never load JMX, see Jmx.
+    public static synchronized void register() {
+        if (registered) {
+            return;
+        }
+        registered = true;
+        Jmx.register(INSTANCE, "type=Games");
+        Jmx.register(VALIDATION, "type=Validation");
+        Jmx.register(SOLVER_NODES, "type=SolverNodes");
+        GENERATION.registerAll();
+        SHUFFLE.registerAll();
+        SOLVE_TIME.registerAll();
+    }
+
+    // System.nanoTime() to pass to a record call, 0 while metrics are off.
+    public static long startTime() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static void recordGeneration(int grid, int gameMode, long startTime) {
+        if (startTime != 0) {
+            GENERATION.get(key(grid, gameMode)).record(System.nanoTime() - startTime);
+        }
+    }
+
+    public static void recordShuffle(int grid, long startTime) {
+        if (startTime != 0) {
+            SHUFFLE.get(grid).record(System.nanoTime() - startTime);
+        }
+    }
+
+    public static void recordValidation(long startTime) {
+        if (startTime != 0) {
+            VALIDATION.record(System.nanoTime() - startTime);
+        }
+    }
+
+    public static void recordSolverNodes(long nodes) {
+        if (enabled) {
+            SOLVER_NODES.record(nodes);
+        }
+    }
+
+    public static void gameStarted() {
+        if (enabled) {
+            GAMES_STARTED.increment();
+        }
+    }
+
+    // A submitted game, with the play time of the StopWatch.
+    public static void gameEnded(int grid, int gameMode, boolean won, long elapsedMillis) {
+        if (!enabled) {
+            return;
+        }
+        if (won) {
+            GAMES_WON.increment();
+            SOLVE_TIME.get(key(grid, gameMode)).record(elapsedMillis);
+        } else {
+            GAMES_LOST.increment();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public long getGamesStarted() {
+        return GAMES_STARTED.sum();
+    }
+
+    public long getGamesWon() {
+        return GAMES_WON.sum();
+    }
+
+    public long getGamesLost() {
+        return GAMES_LOST.sum();
+    }
+
+    // Grid and game mode in one map key, modes are below 2^16.
+    private static int key(int grid, int gameMode) {
+        return grid << 16 | gameMode & 0xFFFF;
+    }
+
+    // Histograms of one type by grid, or by grid and game mode.
+    private static final class Histograms {
+
+        private final ConcurrentHashMap<Integer, LongHistogram> histograms = new ConcurrentHashMap<Integer, LongHistogram>();
+        private final String type;
+        private final String unit;
+        private final boolean byMode;
+
+        private Histograms(String type, String unit, boolean byMode) {
+            this.type = type;
+            this.unit = unit;
+            this.byMode = byMode;
+        }
+
+        private LongHistogram get(int key) {
+            LongHistogram histogram = histograms.get(key);
+            return histogram != null ? histogram : create(key);
+        }
+
+        // Under the class lock, so registering never misses one.
+        private LongHistogram create(int key) {
+            synchronized (SudokuMetrics.class) {
+                LongHistogram histogram = histograms.get(key);
+                if (histogram == null) {
+                    histogram = new LongHistogram(unit);
+                    histograms.put(key, histogram);
+                    if (registered) {
+                        Jmx.register(histogram, nameOf(key));
+                    }
+                }
+                return histogram;
+            }
+        }
+
+        private void registerAll() {
+            for (Integer key : histograms.keySet()) {
+                Jmx.register(histograms.get(key), nameOf(key));
+            }
+        }
+
+        private String nameOf(int key) {
+            return byMode ? "type=" + type + ",grid=" + (key >>> 16) + ",mode=" + (key & 0xFFFF)
+                    : "type=" + type + ",grid=" + key;
+        }
+    }
+
+    // Everything that touches javax.management. Only register uses it,
+    // so the JVM loads it and the platform MBean server on the first
+    // call and never while recording.
+    private static final class Jmx {
+
+        private static final MBeanServer SERVER = ManagementFactory.getPlatformMBeanServer();
+
+        private static void register(Object bean, String properties) {
+            try {
+                SERVER.registerMBean(bean, new ObjectName(DOMAIN + ":" + properties));
+            } catch (JMException e) {
+                // Another instance in this JVM registered first, the game
+                // works the same without.
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ *
+ * @author jithu
+ */
+
+// The Sudoku:type=Games bean of SudokuMetrics, it also turns recording on
+// and off.
+public interface SudokuMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getGamesStarted();
+
+    long getGamesWon();
+
+    long getGamesLost();
+}
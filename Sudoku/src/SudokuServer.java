@@ -0,0 +1,277 @@
+/**
+ *
+ * @author jithu
+ */
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Puzzle service on the JDK's built-in HTTP server, every request runs on
+// its own virtual thread when the JVM has them (Java 21 and later) and on
+// a fixed pool otherwise. Puzzles travel in PuzzleFormat lines:
+//   GET  /puzzle?grid=9&mode=60   {"grid":9,"mode":60,"puzzle":"4..7..."}
+//   POST /check   body: a board   {"valid":true} or {"valid":false,"unit":"row 3"}
+//   POST /solve   body: a puzzle  {"solution":"..."}, 422 if it has none
+// Grids go up to 16x16 and modes are 50, 60 and 75 (easy, medium and
+// expert). A solve gives up with 503 after MAX_SOLVE_NODES search nodes,
+// so no request holds a thread for long.
+// Errors come back as {"error":"..."} with a 4xx status. New puzzles are
+// taken from a PuzzlePool filled in the background, so a request only
+// generates one itself when the pool for its grid and mode ran dry.
+// Latencies are published over JMX, see SudokuMetrics.
+public class SudokuServer {
+
+    public static final int DEFAULT_PORT = 8080;
+    // Accept queue of the listening socket, the kernel may cap it.
+    private static final int BACKLOG = 4096;
+    // A 25x25 line plus some white space.
+    private static final int MAX_BODY = 1024;
+    // The JDK server closes keep-alive connections beyond this many idle
+    // ones, far too few for thousands of clients.
+    private static final String MAX_IDLE_CONNECTIONS = "sun.net.httpserver.maxIdleConnections";
+    private static final int POOL_LOW_WATERMARK = 32;
+    private static final int POOL_HIGH_WATERMARK = 128;
+    private static final int[] GAME_MODES = {Sudoku.GAME_MODE_MEDIUM, Sudoku.GAME_MODE_EASY, Sudoku.GAME_MODE_EXPART};
+    // Well under a second of search on a 16x16 board.
+    private static final long MAX_SOLVE_NODES = 200000;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final PuzzlePool puzzlePool;
+    private final boolean virtualThreads;
+    private volatile SeenPuzzleFilter seenPuzzles;
+    private volatile PuzzleBank puzzleBank;
+    private volatile PuzzleIndex puzzleIndex;
+
+    public SudokuServer(String host, int port) throws IOException {
+        if (System.getProperty(MAX_IDLE_CONNECTIONS) == null) {
+            System.setProperty(MAX_IDLE_CONNECTIONS, "20000");
+        }
+        ExecutorService virtual = newVirtualThreadExecutor();
+        virtualThreads = virtual != null;
+        // Work is CPU bound, without virtual threads a few more threads
+        // than cores keep them busy while some wait on the network.
+        executor = virtual != null ? virtual
+                : Executors.newFixedThreadPool(4 * Runtime.getRuntime().availableProcessors());
+        puzzlePool = new PuzzlePool(POOL_LOW_WATERMARK, POOL_HIGH_WATERMARK,
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        server = HttpServer.create(new InetSocketAddress(host, port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/puzzle", new HttpHandler() {
+
+            public void handle(HttpExchange exchange) throws IOException {
+                handlePuzzle(exchange);
+            }
+        });
+        server.createContext("/check", new HttpHandler() {
+
+            public void handle(HttpExchange exchange) throws IOException {
+                handleCheck(exchange);
+            }
+        });
+        server.createContext("/solve", new HttpHandler() {
+
+            public void handle(HttpExchange exchange) throws IOException {
+                handleSolve(exchange);
+            }
+        });
+    }
+
+    public void start() {
+        int[] grids = {Sudoku.GRID_9X9, Sudoku.GRID_6X6};
+        for (int g : grids) {
+            for (int mode : GAME_MODES) {
+                puzzlePool.prefill(g, mode);
+            }
+        }
+        SudokuMetrics.register();
+        server.start();
+    }
+
+    // Stop accepting, give running exchanges up to delay seconds.
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+        puzzlePool.shutdown();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    // Hand out no puzzle twice, also across restarts, see SeenPuzzleFilter.
+    // One filter serves all requests.
+    public void setSeenPuzzles(SeenPuzzleFilter seenPuzzles) {
+        this.seenPuzzles = seenPuzzles;
+    }
+
+    // Hand out puzzles of a pre-generated bank before pooled or new ones,
+    // see Sudoku.setPuzzleBank. Reading the bank is safe on any thread.
+    public void setPuzzleBank(PuzzleBank puzzleBank, PuzzleIndex puzzleIndex) {
+        this.puzzleIndex = puzzleIndex;
+        this.puzzleBank = puzzleBank;
+    }
+
+    private void handlePuzzle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "Use GET");
+            return;
+        }
+        int grid = Sudoku.GRID_9X9;
+        int gameMode = Sudoku.GAME_MODE_MEDIUM;
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int split = parameter.indexOf('=');
+                String name = split < 0 ? parameter : parameter.substring(0, split);
+                String value = split < 0 ? "" : parameter.substring(split + 1);
+                try {
+                    if ("grid".equals(name)) {
+                        grid = Integer.parseInt(value);
+                    } else if ("mode".equals(name)) {
+                        gameMode = Integer.parseInt(value);
+                    }
+                } catch (NumberFormatException e) {
+                    sendError(exchange, 400, "Invalid " + name);
+                    return;
+                }
+            }
+        }
+        if (!BoardGeometry.isSupported(grid) || grid > Sudoku.GRID_16X16) {
+            sendError(exchange, 400, "Unsupported grid " + grid);
+            return;
+        }
+        // Every mode gets its own pool and metrics, only the known ones
+        // are taken.
+        if (!isGameMode(gameMode)) {
+            sendError(exchange, 400, "Unsupported mode " + gameMode);
+            return;
+        }
+        // A Sudoku instance is cheap until it has to generate, and never
+        // shared between requests.
+        Sudoku sudoku = new Sudoku(new SplittableRandom(ThreadLocalRandom.current().nextLong()));
+        sudoku.setPuzzlePool(puzzlePool);
+        sudoku.setSeenPuzzles(seenPuzzles);
+        if (puzzleBank != null) {
+            sudoku.setPuzzleBank(puzzleBank, puzzleIndex);
+        }
+        int[][] puzzle = sudoku.getNewPuzzle(grid, gameMode);
+        send(exchange, 200, "{\"grid\":" + grid + ",\"mode\":" + gameMode
+                + ",\"puzzle\":\"" + PuzzleFormat.format(puzzle) + "\"}");
+    }
+
+    private void handleCheck(HttpExchange exchange) throws IOException {
+        int[][] board = readPuzzle(exchange);
+        if (board == null) {
+            return;
+        }
+        long startTime = SudokuMetrics.startTime();
+        int unit = SudokuValidator.findInvalidUnit(board);
+        SudokuMetrics.recordValidation(startTime);
+        if (unit == SudokuValidator.VALID) {
+            send(exchange, 200, "{\"valid\":true}");
+        } else {
+            send(exchange, 200, "{\"valid\":false,\"unit\":\"" + SudokuValidator.describe(unit, board.length) + "\"}");
+        }
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        int[][] puzzle = readPuzzle(exchange);
+        if (puzzle == null) {
+            return;
+        }
+        if (puzzle.length > Sudoku.GRID_16X16) {
+            sendError(exchange, 400, "Unsupported grid " + puzzle.length);
+            return;
+        }
+        SudokuSolver solver = new SudokuSolver(puzzle.length);
+        solver.setNodeLimit(MAX_SOLVE_NODES);
+        int[][] solution = solver.solve(puzzle);
+        if (solver.isLimitReached()) {
+            sendError(exchange, 503, "Puzzle too hard to solve here");
+        } else if (solution == null) {
+            sendError(exchange, 422, "Puzzle has no solution");
+        } else {
+            send(exchange, 200, "{\"solution\":\"" + PuzzleFormat.format(solution) + "\"}");
+        }
+    }
+
+    // Read a puzzle line from a POST body, answers the request itself and
+    // returns null if there is none.
+    private int[][] readPuzzle(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "Use POST");
+            return null;
+        }
+        byte[] body = new byte[MAX_BODY + 1];
+        int length = 0;
+        InputStream in = exchange.getRequestBody();
+        try {
+            int read;
+            while (length < body.length && (read = in.read(body, length, body.length - length)) > 0) {
+                length += read;
+            }
+        } finally {
+            in.close();
+        }
+        if (length > MAX_BODY) {
+            sendError(exchange, 413, "Body larger than " + MAX_BODY + " bytes");
+            return null;
+        }
+        try {
+            return PuzzleFormat.parse(new String(body, 0, length, StandardCharsets.US_ASCII).trim());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+            return null;
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        send(exchange, status, "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}");
+    }
+
+    private void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static boolean isGameMode(int gameMode) {
+        for (int mode : GAME_MODES) {
+            if (mode == gameMode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor exists from Java 21 on,
+    // the project still compiles for older versions.
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
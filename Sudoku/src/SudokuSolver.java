@@ -0,0 +1,386 @@
+/**
+ *
+ * @author jithu
+ */
+public class SudokuSolver {
+
+    private final int size;
+    private final int cellCount;
+    private final int allDigits;
+    // cell index -> row, column and box index, shared with the geometry.
+    private final int[] cellRow;
+    private final int[] cellCol;
+    private final int[] cellBox;
+    // units[u * size + k] is the k-th cell of unit u.
+    // Units 0..size-1 are rows, then columns, then boxes.
+    private final int[] units;
+    // Digits used in every row, column and box as bitmask (bit d-1 for digit d).
+    private final int[] rowUsed;
+    private final int[] colUsed;
+    private final int[] boxUsed;
+    private final int[] cells;
+    // Cells placed since the search started, used to undo a branch.
+    private final int[] trail;
+    private int trailTop;
+    // Cells given by the loaded puzzle.
+    private int givens;
+    private final int[] solution;
+    private int solutionCount;
+    private int solutionLimit;
+    private long nodeCount;
+    // A search gives up after this many nodes, see setNodeLimit.
+    private long nodeLimit = Long.MAX_VALUE;
+    private boolean limitReached;
+
+    public SudokuSolver(int grid) {
+        this(BoardGeometry.of(grid));
+    }
+
+    public SudokuSolver(BoardGeometry geometry) {
+        int grid = geometry.getSize();
+        size = grid;
+        cellCount = geometry.getCellCount();
+        allDigits = (1 << grid) - 1;
+        cellRow = geometry.getCellRows();
+        cellCol = geometry.getCellColumns();
+        cellBox = geometry.getCellBoxes();
+        units = geometry.getUnits();
+
+        rowUsed = new int[grid];
+        colUsed = new int[grid];
+        boxUsed = new int[grid];
+        cells = new int[cellCount];
+        trail = new int[cellCount];
+        solution = new int[cellCount];
+    }
+
+    // Solve the puzzle, returns the solution or null if it has none.
+    public int[][] solve(int[][] puzzle) {
+        if (search(puzzle, 1) == 0) {
+            return null;
+        }
+        int[][] solved = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(solution, i * size, solved[i], 0, size);
+        }
+        return solved;
+    }
+
+    // Solve a puzzle given as cell digits row by row, without allocating.
+    // Writes the solution to solved and returns false if there is none.
+    public boolean solve(int[] puzzle, int[] solved) {
+        SolverEvent event = FlightEvents.isRecording() ? new SolverEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        solutionCount = 0;
+        solutionLimit = 1;
+        nodeCount = 0;
+        limitReached = false;
+        if (!load(puzzle)) {
+            return false;
+        }
+        search();
+        searched(event);
+        if (solutionCount == 0) {
+            return false;
+        }
+        System.arraycopy(solution, 0, solved, 0, cellCount);
+        return true;
+    }
+
+    // Count solutions of the puzzle, stops as soon as limit is reached.
+    public int countSolutions(int[][] puzzle, int limit) {
+        return search(puzzle, limit);
+    }
+
+    public boolean hasUniqueSolution(int[][] puzzle) {
+        return search(puzzle, 2) == 1;
+    }
+
+    // Check whether the puzzle has a solution with a digit other than the
+    // given one at row, col. If the puzzle with that digit filled in is known
+    // to be unique this tells whether emptying the cell keeps it unique, and
+    // is much cheaper than counting solutions.
+    public boolean hasSolutionWithout(int[][] puzzle, int row, int col, int digit) {
+        SolverEvent event = FlightEvents.isRecording() ? new SolverEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        solutionCount = 0;
+        solutionLimit = 1;
+        nodeCount = 0;
+        limitReached = false;
+        if (puzzle.length != size || !load(puzzle)) {
+            return false;
+        }
+        int cell = row * size + col;
+        if (cells[cell] != 0) {
+            return false;
+        }
+        int candidates = candidates(cell) & ~(1 << (digit - 1));
+        while (candidates != 0 && solutionCount == 0 && !limitReached) {
+            int bit = candidates & -candidates;
+            candidates ^= bit;
+            place(cell, bit);
+            search();
+            undo(0);
+        }
+        searched(event);
+        return solutionCount > 0;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // Number of search nodes visited by the last solve.
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    // Stop every search after limit nodes, for callers that can not wait
+    // on a hard puzzle. A search that stopped reports no solution and
+    // isLimitReached tells it apart from a puzzle without one.
+    public void setNodeLimit(long limit) {
+        nodeLimit = limit;
+    }
+
+    public boolean isLimitReached() {
+        return limitReached;
+    }
+
+    private int search(int[][] puzzle, int limit) {
+        SolverEvent event = FlightEvents.isRecording() ? new SolverEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        solutionCount = 0;
+        solutionLimit = limit;
+        nodeCount = 0;
+        limitReached = false;
+        if (puzzle.length != size || !load(puzzle)) {
+            return 0;
+        }
+        search();
+        searched(event);
+        return solutionCount;
+    }
+
+    // Metrics and flight recorder event of a finished search, the event
+    // is null while nothing records, see FlightEvents.
+    private void searched(SolverEvent event) {
+        SudokuMetrics.recordSolverNodes(nodeCount);
+        if (event != null && event.shouldCommit()) {
+            event.grid = size;
+            event.clues = givens;
+            event.backtracks = nodeCount;
+            event.solutions = solutionCount;
+            event.commit();
+        }
+    }
+
+    // Load the givens, returns false if they already conflict.
+    private boolean load(int[][] puzzle) {
+        reset();
+        for (int i = 0; i < size; i++) {
+            if (puzzle[i].length != size) {
+                return false;
+            }
+            for (int j = 0; j < size; j++) {
+                if (!give(i * size + j, puzzle[i][j])) {
+                    return false;
+                }
+            }
+        }
+        // Givens are never undone.
+        givens = trailTop;
+        trailTop = 0;
+        return true;
+    }
+
+    private boolean load(int[] puzzle) {
+        if (puzzle.length < cellCount) {
+            return false;
+        }
+        reset();
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (!give(cell, puzzle[cell])) {
+                return false;
+            }
+        }
+        givens = trailTop;
+        trailTop = 0;
+        return true;
+    }
+
+    private void reset() {
+        for (int i = 0; i < size; i++) {
+            rowUsed[i] = 0;
+            colUsed[i] = 0;
+            boxUsed[i] = 0;
+        }
+        trailTop = 0;
+    }
+
+    // Place a given digit, 0 leaves the cell empty. Returns false if the
+    // digit is out of range or already used by a peer.
+    private boolean give(int cell, int digit) {
+        cells[cell] = 0;
+        if (digit == 0) {
+            return true;
+        }
+        if (digit < 0 || digit > size) {
+            return false;
+        }
+        int bit = 1 << (digit - 1);
+        if ((candidates(cell) & bit) == 0) {
+            return false;
+        }
+        place(cell, bit);
+        return true;
+    }
+
+    // Depth first search, returns true when enough solutions are found.
+    private boolean search() {
+        if (nodeCount >= nodeLimit) {
+            // Unwind as if enough solutions were found.
+            limitReached = true;
+            return true;
+        }
+        nodeCount++;
+        int mark = trailTop;
+        if (!propagate()) {
+            undo(mark);
+            return false;
+        }
+
+        // Branch on the most constrained cell.
+        int best = -1;
+        int bestCount = size + 1;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (cells[cell] == 0) {
+                int count = Integer.bitCount(candidates(cell));
+                if (count < bestCount) {
+                    best = cell;
+                    bestCount = count;
+                    if (count == 2) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (best < 0) {
+            if (solutionCount == 0) {
+                System.arraycopy(cells, 0, solution, 0, cellCount);
+            }
+            solutionCount++;
+            undo(mark);
+            return solutionCount >= solutionLimit;
+        }
+
+        int candidates = candidates(best);
+        while (candidates != 0) {
+            int bit = candidates & -candidates;
+            candidates ^= bit;
+            int branchMark = trailTop;
+            place(best, bit);
+            boolean done = search();
+            undo(branchMark);
+            if (done) {
+                undo(mark);
+                return true;
+            }
+        }
+        undo(mark);
+        return false;
+    }
+
+    // Place naked and hidden singles until nothing changes.
+    // Returns false when the board reaches a contradiction.
+    private boolean propagate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            // naked singles
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (cells[cell] == 0) {
+                    int candidates = candidates(cell);
+                    if (candidates == 0) {
+                        return false;
+                    }
+                    if ((candidates & (candidates - 1)) == 0) {
+                        place(cell, candidates);
+                        changed = true;
+                    }
+                }
+            }
+
+            // hidden singles
+            for (int unit = 0; unit < 3 * size; unit++) {
+                int base = unit * size;
+                int once = 0;
+                int twice = 0;
+                for (int k = 0; k < size; k++) {
+                    int cell = units[base + k];
+                    if (cells[cell] == 0) {
+                        int candidates = candidates(cell);
+                        twice |= once & candidates;
+                        once |= candidates;
+                    }
+                }
+                if ((once | unitUsed(unit)) != allDigits) {
+                    return false;
+                }
+                int hidden = once & ~twice;
+                while (hidden != 0) {
+                    int bit = hidden & -hidden;
+                    hidden ^= bit;
+                    for (int k = 0; k < size; k++) {
+                        int cell = units[base + k];
+                        if (cells[cell] == 0 && (candidates(cell) & bit) != 0) {
+                            place(cell, bit);
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private int unitUsed(int unit) {
+        if (unit < size) {
+            return rowUsed[unit];
+        } else if (unit < 2 * size) {
+            return colUsed[unit - size];
+        }
+        return boxUsed[unit - 2 * size];
+    }
+
+    private int candidates(int cell) {
+        return allDigits & ~(rowUsed[cellRow[cell]] | colUsed[cellCol[cell]] | boxUsed[cellBox[cell]]);
+    }
+
+    private void place(int cell, int bit) {
+        cells[cell] = Integer.numberOfTrailingZeros(bit) + 1;
+        rowUsed[cellRow[cell]] |= bit;
+        colUsed[cellCol[cell]] |= bit;
+        boxUsed[cellBox[cell]] |= bit;
+        trail[trailTop++] = cell;
+    }
+
+    private void undo(int mark) {
+        while (trailTop > mark) {
+            int cell = trail[--trailTop];
+            int bit = ~(1 << (cells[cell] - 1));
+            rowUsed[cellRow[cell]] &= bit;
+            colUsed[cellCol[cell]] &= bit;
+            boxUsed[cellBox[cell]] &= bit;
+            cells[cell] = 0;
+        }
+    }
+}
@@ -3,35 +3,56 @@
  * @author jithu
  */
 import java.awt.GridLayout;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.text.SimpleDateFormat;
-import java.util.TimeZone;
-import javax.swing.JButton;
+import java.io.File;
+import java.io.IOException;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
-import javax.swing.JPanel;
 public class SudokuUI extends javax.swing.JFrame {
 
-    private JButton[][] buttons;
-    private ActionListener[][] actionListener;
-    private JPanel[][] blocks;
+    private final BoardView boardView;
+    private BoardModel boardModel;
     private Sudoku sudoku;
+    private PuzzlePool puzzlePool;
     private int gameMode;
     private int grid;
-    private boolean paused;
-    private final StopWatch stopWatch;
+    private final GameClock clock;
+    private MoveJournal journal;
+    // The game in progress, continued on the next start.
+    private static final File JOURNAL_FILE = new File(System.getProperty("user.home"),
+            ".sudoku" + File.separator + "game.journal");
+    // Puzzles played before, not handed out again.
+    private static final File SEEN_FILE = new File(System.getProperty("user.home"),
+            ".sudoku" + File.separator + "seen.bloom");
+    private static final long SEEN_CAPACITY = 1000000;
+    private static final double SEEN_FALSE_POSITIVES = 0.001;
+    private SeenPuzzleFilter seenPuzzles;
 
     /** Creates new form UI */
     public SudokuUI() {
         sudoku = new Sudoku();
         gameMode = Sudoku.GAME_MODE_MEDIUM;
         grid = Sudoku.GRID_9X9;
-        stopWatch = new StopWatch();
-        paused = false;
+        puzzlePool = new PuzzlePool();
+        sudoku.setPuzzlePool(puzzlePool);
+        try {
+            seenPuzzles = SeenPuzzleFilter.open(SEEN_FILE, SEEN_CAPACITY, SEEN_FALSE_POSITIVES);
+            sudoku.setSeenPuzzles(seenPuzzles);
+        } catch (IOException e) {
+            // Puzzles may repeat.
+        }
         initComponents();
+        clock = new GameClock(timeLabel);
+        boardView = new BoardView();
+        board.setLayout(new GridLayout(1, 1));
+        board.add(boardView);
+        addWindowListener(new java.awt.event.WindowAdapter() {
+
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                saveAll();
+            }
+        });
         initialize();
-        startTimer();
     }
 
     /** This method is called from within the constructor to
@@ -57,7 +78,12 @@ public class SudokuUI extends javax.swing.JFrame {
         game = new javax.swing.JMenu();
         newGame = new javax.swing.JMenuItem();
         newGame6X6 = new javax.swing.JMenuItem();
+        newGame12X12 = new javax.swing.JMenuItem();
+        newGame16X16 = new javax.swing.JMenuItem();
         resetGame = new javax.swing.JMenuItem();
+        undo = new javax.swing.JMenuItem();
+        redo = new javax.swing.JMenuItem();
+        pencilMarks = new javax.swing.JCheckBoxMenuItem();
         jSeparator1 = new javax.swing.JPopupMenu.Separator();
         exit = new javax.swing.JMenuItem(); 
         jMenu2 = new javax.swing.JMenu();
@@ -115,7 +141,7 @@ public class SudokuUI extends javax.swing.JFrame {
         timeLabel.setFont(new java.awt.Font("Tahoma", 0, 24));
         timeLabel.setForeground(new java.awt.Color(51, 51, 51));
         timeLabel.setHorizontalAlignment(javax.swing.SwingConstants.RIGHT);
-        timeLabel.setText("00:00:000");
+        timeLabel.setText("00:00");
         timeLabel.setIconTextGap(0);
 
         resume.setBackground(new java.awt.Color(255, 255, 255));
@@ -218,6 +244,22 @@ public class SudokuUI extends javax.swing.JFrame {
         });
         game.add(newGame6X6);
 
+        newGame12X12.setText("New Game 12 X 12");
+        newGame12X12.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                newGame12X12ActionPerformed(evt);
+            }
+        });
+        game.add(newGame12X12);
+
+        newGame16X16.setText("New Game 16 X 16");
+        newGame16X16.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                newGame16X16ActionPerformed(evt);
+            }
+        });
+        game.add(newGame16X16);
+
         resetGame.setText("Reset Game");
         resetGame.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(java.awt.event.ActionEvent evt) {
@@ -225,6 +267,32 @@ public class SudokuUI extends javax.swing.JFrame {
             }
         });
         game.add(resetGame);
+
+        undo.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_Z, java.awt.event.InputEvent.CTRL_DOWN_MASK));
+        undo.setText("Undo");
+        undo.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                undoActionPerformed(evt);
+            }
+        });
+        game.add(undo);
+
+        redo.setAccelerator(javax.swing.KeyStroke.getKeyStroke(java.awt.event.KeyEvent.VK_Y, java.awt.event.InputEvent.CTRL_DOWN_MASK));
+        redo.setText("Redo");
+        redo.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                redoActionPerformed(evt);
+            }
+        });
+        game.add(redo);
+
+        pencilMarks.setText("Pencil Marks");
+        pencilMarks.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                pencilMarksActionPerformed(evt);
+            }
+        });
+        game.add(pencilMarks);
         game.add(jSeparator1);
 
         exit.setText("Exit");
@@ -304,8 +372,7 @@ public class SudokuUI extends javax.swing.JFrame {
     }//GEN-LAST:event_newGameActionPerformed
 
     private void resetGameActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_resetGameActionPerformed
-        int[][] puzzle = sudoku.resetPuzzle();
-        createBoard(puzzle);
+        resetBoard();
     }//GEN-LAST:event_resetGameActionPerformed
 
     private void intermediatorActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_intermediatorActionPerformed
@@ -321,6 +388,7 @@ public class SudokuUI extends javax.swing.JFrame {
     }//GEN-LAST:event_expartActionPerformed
 
     private void exitActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_exitActionPerformed
+        saveAll();
         System.exit(0);
     }//GEN-LAST:event_exitActionPerformed
 
@@ -336,15 +404,42 @@ public class SudokuUI extends javax.swing.JFrame {
         createBoard(puzzle);
     }//GEN-LAST:event_newGame6X6ActionPerformed
 
+    private void newGame12X12ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_newGame12X12ActionPerformed
+        grid = Sudoku.GRID_12X12;
+        int[][] puzzle = sudoku.getNewPuzzle(grid, gameMode);
+        createBoard(puzzle);
+    }//GEN-LAST:event_newGame12X12ActionPerformed
+
+    private void newGame16X16ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_newGame16X16ActionPerformed
+        grid = Sudoku.GRID_16X16;
+        int[][] puzzle = sudoku.getNewPuzzle(grid, gameMode);
+        createBoard(puzzle);
+    }//GEN-LAST:event_newGame16X16ActionPerformed
+
+    private void undoActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_undoActionPerformed
+        if (journal != null) {
+            journal.undo();
+        }
+    }//GEN-LAST:event_undoActionPerformed
+
+    private void redoActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_redoActionPerformed
+        if (journal != null) {
+            journal.redo();
+        }
+    }//GEN-LAST:event_redoActionPerformed
+
+    private void pencilMarksActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_pencilMarksActionPerformed
+        boardView.setShowCandidates(pencilMarks.isSelected());
+    }//GEN-LAST:event_pencilMarksActionPerformed
+
     private void pauseActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_pauseActionPerformed
-        stopWatch.pause();
-        paused = true;
+        clock.pause();
+        flushJournal();
         showMessage("Paused");
     }//GEN-LAST:event_pauseActionPerformed
 
     private void resumeActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_resumeActionPerformed
-        stopWatch.resume();
-        paused = false;
+        clock.resume();
         holder.removeAll();
         holder.add(board);
         holder.repaint();
@@ -352,8 +447,7 @@ public class SudokuUI extends javax.swing.JFrame {
     }//GEN-LAST:event_resumeActionPerformed
 
     private void resetGameButActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_resetGameButActionPerformed
-        int[][] puzzle = sudoku.resetPuzzle();
-        createBoard(puzzle);
+        resetBoard();
     }//GEN-LAST:event_resetGameButActionPerformed
 
     private void newGameButActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_newGameButActionPerformed
@@ -362,16 +456,20 @@ public class SudokuUI extends javax.swing.JFrame {
     }//GEN-LAST:event_newGameButActionPerformed
 
     private void submitActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_submitActionPerformed
-        if (!isAnsComplete()) {
+        if (!boardModel.isComplete()) {
             JOptionPane.showMessageDialog(this, "Please complete your answer.");
         } else {
-            stopWatch.stop();
-            boolean isAnsCorrect = sudoku.check(getAns());
+            clock.stop();
+            // The game is over, nothing to continue.
+            deleteJournal();
             String messageStr = "";
-            if (isAnsCorrect) {
-                messageStr = "Congratulation You have won the Game in " + timeLabel.getText();
+            boolean won = sudoku.check(boardModel);
+            SudokuMetrics.gameEnded(boardModel.getSize(), gameMode, won, clock.getElapsedTime());
+            if (won) {
+                messageStr = "Congratulation You have won the Game in " + clock.getElapsedText();
             } else {
-                messageStr = "Sorry You have failed. ";
+                int invalidUnit = sudoku.findInvalidUnit(boardModel);
+                messageStr = "Sorry You have failed. Check " + SudokuValidator.describe(invalidUnit, grid) + ".";
             }
             showMessage(messageStr);
         }
@@ -381,107 +479,127 @@ public class SudokuUI extends javax.swing.JFrame {
         JOptionPane.showMessageDialog(this, "Project : Sudoku\nAuthor : Raj\nInstitute : Erudite Electronics & IT Solutions (P) Ltd");
     }//GEN-LAST:event_aboutActionPerformed
 
+    // A new puzzle, counted as a started game.
     private void createBoard(int[][] puzzle) {
-        board.removeAll();
-        grid = puzzle.length;
-        blocks = new JPanel[grid][grid];
-        buttons = new JButton[grid][grid];
-        actionListener = new ActionListener[grid][grid];
-        board.setLayout(new GridLayout(grid, grid, 3, 3));
-
-        int rowsInGrid = grid == 9 ? 3 : 2;
-
-        for (int i = 0; i < grid; i++) {
-            for (int j = 0; j < grid; j++) {
-                blocks[i][j] = new JPanel();
-                buttons[i][j] = new JButton();
-                String text = "";
-                if (0 < puzzle[i][j] && puzzle[i][j] <= grid) {
-                    text += puzzle[i][j];
-                } else {
-                    final JButton tempbutton = buttons[i][j];
-                    final JPanel tempBlock = blocks[i][j];
-                    actionListener[i][j] = new ActionListener() {
-
-                        public void actionPerformed(ActionEvent e) {
-                            viewInputs(tempBlock, tempbutton, grid);
-                        }
-                    };
-                    buttons[i][j].addActionListener(actionListener[i][j]);
-                }
-                buttons[i][j].setText(text);
-                buttons[i][j].setFont(new java.awt.Font("Tahoma", 0, 24));
-
-                if (((0 <= i && i < rowsInGrid) || (rowsInGrid * 2 <= i && i < grid)) && (3 <= j && j < 6)) {
-                    buttons[i][j].setBackground(new java.awt.Color(204, 204, 204));
-                } else if ((rowsInGrid <= i && i < rowsInGrid * 2) && ((0 <= j && j < 3) || (6 <= j && j < 9))) {
-                    buttons[i][j].setBackground(new java.awt.Color(204, 204, 204));
-                } else {
-                    buttons[i][j].setBackground(new java.awt.Color(255, 255, 255));
-                }
-                blocks[i][j].setLayout(new GridLayout(1, 1));
-                blocks[i][j].add(buttons[i][j]);
-                board.add(blocks[i][j]);
-            }
+        startBoard(puzzle);
+        SudokuMetrics.gameStarted();
+    }
+
+    // The same puzzle from the start again, still the same game.
+    private void resetBoard() {
+        startBoard(boardModel.getPuzzle());
+    }
+
+    // Start a game and a new journal for it.
+    private void startBoard(int[][] puzzle) {
+        closeJournal();
+        showBoard(puzzle);
+        clock.start();
+        try {
+            journal = MoveJournal.create(JOURNAL_FILE, puzzle);
+            journal.attach(boardModel, clock.getStopWatch());
+        } catch (IOException e) {
+            // The game goes on without saving or undo.
+            journal = null;
         }
+    }
 
-        holder.removeAll();
-        holder.add(board);
-        board.repaint();
-        holder.repaint();
-        this.setVisible(true);
-        stopWatch.start();
+    // Continue the game of the journal, false if there is none.
+    private boolean restoreBoard() {
+        if (!JOURNAL_FILE.exists()) {
+            return false;
+        }
+        MoveJournal saved;
+        try {
+            saved = MoveJournal.open(JOURNAL_FILE);
+        } catch (IOException e) {
+            return false;
+        }
+        showBoard(saved.getPuzzle());
+        saved.attach(boardModel, clock.getStopWatch());
+        journal = saved;
+        clock.start(saved.getElapsedTime());
+        return true;
     }
 
-    private void initialize() {
-        int[][] puzzle = sudoku.getNewPuzzle(grid, gameMode);
-        createBoard(puzzle);
+    private void flushJournal() {
+        if (journal != null) {
+            try {
+                journal.flush();
+            } catch (IOException e) {
+                // Saving stopped, the game goes on.
+            }
+        }
     }
 
-    private void viewInputs(JPanel block, JButton inputButtton, int numOfInput) {
-        JPanel inputs = new Inputs(this, block, inputButtton, numOfInput);
-        block.remove(inputButtton);
-        block.add(inputs);
-        this.setVisible(true);
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                // Nothing more can be saved.
+            }
+            journal = null;
+        }
     }
 
-    public void setInput(String ans, JPanel block, JButton inputButtton) {
-        block.removeAll();
-        inputButtton.setText(ans);
-        inputButtton.setFont(new java.awt.Font("Tahoma", 1, 24));
-        block.add(inputButtton);
-        this.repaint();
+    // Everything that has to reach the disk before the window goes, on
+    // every way out.
+    private void saveAll() {
+        closeJournal();
+        closeSeenPuzzles();
     }
 
-    private int[][] getAns() {
-        int ans[][] = new int[grid][grid];
+    private void closeSeenPuzzles() {
+        if (seenPuzzles != null) {
+            try {
+                seenPuzzles.close();
+            } catch (IOException e) {
+                // The system writes the mapped bits back anyway.
+            }
+            seenPuzzles = null;
+        }
+    }
 
-        for (int i = 0; i < grid; i++) {
-            for (int j = 0; j < grid; j++) {
-                try {
-                    ans[i][j] = Integer.parseInt(buttons[i][j].getText());
-                } catch (NumberFormatException e) {
-                    ans[i][j] = 0;
-                }
+    private void deleteJournal() {
+        if (journal != null) {
+            try {
+                journal.delete();
+            } catch (IOException e) {
+                // A finished game may be continued once more.
             }
+            journal = null;
+        }
+    }
+
+    // The board view is made once, a new game only loads the puzzle.
+    private void showBoard(int[][] puzzle) {
+        grid = puzzle.length;
+        if (boardModel == null || boardModel.getSize() != grid) {
+            boardModel = new BoardModel(grid);
+            boardView.setModel(boardModel);
         }
+        boardModel.load(puzzle);
 
-        return ans;
+        holder.removeAll();
+        holder.add(board);
+        holder.revalidate();
+        holder.repaint();
     }
 
-    private boolean isAnsComplete() {
-        boolean isAnsComplete = true;
-        for (int i = 0; i < grid; i++) {
-            for (int j = 0; j < grid; j++) {
-                try {
-                    Integer.parseInt(buttons[i][j].getText());
-                } catch (NumberFormatException e) {
-                    isAnsComplete = false;
-                    break;
-                }
+    private void initialize() {
+        if (!restoreBoard()) {
+            int[][] puzzle = sudoku.getNewPuzzle(grid, gameMode);
+            createBoard(puzzle);
+        }
+        // Every grid and level reachable from the menu.
+        int[] grids = {Sudoku.GRID_9X9, Sudoku.GRID_6X6, Sudoku.GRID_12X12, Sudoku.GRID_16X16};
+        int[] gameModes = {Sudoku.GAME_MODE_MEDIUM, Sudoku.GAME_MODE_EASY, Sudoku.GAME_MODE_EXPART};
+        for (int g : grids) {
+            for (int mode : gameModes) {
+                puzzlePool.prefill(g, mode);
             }
         }
-        return isAnsComplete;
     }
 
     private void showMessage(String message) {
@@ -495,24 +613,6 @@ public class SudokuUI extends javax.swing.JFrame {
         this.setVisible(true);
     }
 
-    private void startTimer() {
-        Thread thread = new Thread(new Runnable() {
-
-            public void run() {
-                stopWatch.start();
-                while (true) {
-                    if (!paused) {
-                        SimpleDateFormat format=new SimpleDateFormat("mm:ss:SSS");
-                        format.setTimeZone(TimeZone.getTimeZone("CET"));
-                        final String timeString = format.format(stopWatch.getElapsedTime());
-                        timeLabel.setText(timeString);
-                        
-                    }
-                }
-            }
-        });
-        thread.start();
-    }
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private javax.swing.JMenuItem about;
     private javax.swing.JPanel base;
@@ -528,14 +628,19 @@ public class SudokuUI extends javax.swing.JFrame {
     private javax.swing.JPopupMenu.Separator jSeparator1;
     private javax.swing.JMenuBar menue;
     private javax.swing.JMenuItem newGame;
+    private javax.swing.JMenuItem newGame12X12;
+    private javax.swing.JMenuItem newGame16X16;
     private javax.swing.JMenuItem newGame6X6;
     private javax.swing.JButton newGameBut;
     private javax.swing.JPanel options;
     private javax.swing.JButton pause;
+    private javax.swing.JMenuItem redo;
+    private javax.swing.JCheckBoxMenuItem pencilMarks;
     private javax.swing.JMenuItem resetGame;
     private javax.swing.JButton resetGameBut;
     private javax.swing.JButton resume;
     private javax.swing.JButton submit;
     private javax.swing.JLabel timeLabel;
+    private javax.swing.JMenuItem undo;
     // End of variables declaration//GEN-END:variables
 }
@@ -0,0 +1,152 @@
+/**
+ *
+ * @author jithu
+ */
+public class SudokuValidator {
+
+    public static final int VALID = -1;
+    public static final int UNIT_ROW = 0;
+    public static final int UNIT_COLUMN = 1;
+    public static final int UNIT_BOX = 2;
+
+    // Find the first row, column or box of a completed board that does not
+    // hold every digit exactly once. Returns VALID for a correct board,
+    // otherwise the unit as unitKind * size + index (see getUnitKind and
+    // getUnitIndex). Nothing is allocated.
+    public static int findInvalidUnit(int[][] board) {
+        int size = board.length;
+        int allDigits = (1 << size) - 1;
+        BoardGeometry geometry = BoardGeometry.of(size);
+
+        // check rows
+        for (int i = 0; i < size; i++) {
+            int seen = 0;
+            for (int j = 0; j < size; j++) {
+                int value = board[i][j];
+                if (value < 1 || value > size) {
+                    return UNIT_ROW * size + i;
+                }
+                seen |= 1 << (value - 1);
+            }
+            if (seen != allDigits) {
+                return UNIT_ROW * size + i;
+            }
+        }
+
+        // check columns, digits are already known to be in range.
+        for (int j = 0; j < size; j++) {
+            int seen = 0;
+            for (int i = 0; i < size; i++) {
+                seen |= 1 << (board[i][j] - 1);
+            }
+            if (seen != allDigits) {
+                return UNIT_COLUMN * size + j;
+            }
+        }
+
+        // check boxes, their cells come from the geometry tables.
+        int[] units = geometry.getUnits();
+        int[] cellRow = geometry.getCellRows();
+        int[] cellCol = geometry.getCellColumns();
+        for (int box = 0; box < size; box++) {
+            int base = (2 * size + box) * size;
+            int seen = 0;
+            for (int k = 0; k < size; k++) {
+                int cell = units[base + k];
+                seen |= 1 << (board[cellRow[cell]][cellCol[cell]] - 1);
+            }
+            if (seen != allDigits) {
+                return UNIT_BOX * size + box;
+            }
+        }
+
+        return VALID;
+    }
+
+    // Same check for a board given as cell digits row by row.
+    public static int findInvalidUnit(int[] cells, BoardGeometry geometry) {
+        int size = geometry.getSize();
+        int allDigits = (1 << size) - 1;
+        int[] units = geometry.getUnits();
+
+        // check rows, digits out of range fail their row.
+        for (int i = 0; i < size; i++) {
+            int seen = 0;
+            for (int j = i * size; j < (i + 1) * size; j++) {
+                int value = cells[j];
+                if (value < 1 || value > size) {
+                    return UNIT_ROW * size + i;
+                }
+                seen |= 1 << (value - 1);
+            }
+            if (seen != allDigits) {
+                return UNIT_ROW * size + i;
+            }
+        }
+
+        // check columns and boxes.
+        for (int unit = size; unit < 3 * size; unit++) {
+            int seen = 0;
+            for (int k = unit * size; k < (unit + 1) * size; k++) {
+                seen |= 1 << (cells[units[k]] - 1);
+            }
+            if (seen != allDigits) {
+                return unit;
+            }
+        }
+
+        return VALID;
+    }
+
+    // Which of many completed boards of one size fail findInvalidUnit,
+    // boards[b] is bit b % 64 of word b / 64. Up to 16x16 they are packed
+    // into a BoardBatch and checked 64 at a time, bigger ones one by one.
+    public static long[] findInvalidBoards(int[][][] boards) {
+        long[] invalid = new long[(boards.length + 63) / 64];
+        if (boards.length == 0) {
+            return invalid;
+        }
+        int size = boards[0].length;
+        if (!BoardBatch.isSupported(size)) {
+            for (int b = 0; b < boards.length; b++) {
+                if (boards[b].length != size || findInvalidUnit(boards[b]) != VALID) {
+                    invalid[b / 64] |= 1L << b;
+                }
+            }
+            return invalid;
+        }
+        BoardBatch batch = new BoardBatch(size, boards.length);
+        for (int[][] board : boards) {
+            batch.add(board);
+        }
+        return batch.findInvalid(invalid);
+    }
+
+    public static int getUnitKind(int unit, int size) {
+        return unit / size;
+    }
+
+    // Zero based row, column or box number, boxes are counted row by row.
+    public static int getUnitIndex(int unit, int size) {
+        return unit % size;
+    }
+
+    // Human readable name of a unit, for example "row 3".
+    public static String describe(int unit, int size) {
+        if (unit == VALID) {
+            return "valid";
+        }
+        String kind;
+        switch (getUnitKind(unit, size)) {
+            case UNIT_ROW:
+                kind = "row";
+                break;
+            case UNIT_COLUMN:
+                kind = "column";
+                break;
+            default:
+                kind = "box";
+        }
+        return kind + " " + (getUnitIndex(unit, size) + 1);
+    }
+}
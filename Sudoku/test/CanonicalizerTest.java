@@ -0,0 +1,122 @@
+/**
+ *
+ * @author jithu
+ */
+import java.util.SplittableRandom;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+// Boards that are the same puzzle up to symmetry share their key, hash and
+// fingerprint, whichever symmetry is applied.
+public class CanonicalizerTest {
+
+    private static final int ROUNDS = 25;
+
+    @Test
+    public void keysDoNotChangeUnderRandomSymmetries6X6() {
+        checkSymmetries(Sudoku.GRID_6X6, 1);
+    }
+
+    @Test
+    public void keysDoNotChangeUnderRandomSymmetries9X9() {
+        checkSymmetries(Sudoku.GRID_9X9, 2);
+    }
+
+    @Test
+    public void keysDoNotChangeUnderRandomSymmetries12X12() {
+        checkSymmetries(Sudoku.GRID_12X12, 3);
+    }
+
+    @Test
+    public void solvedBoardsKeepTheirKey() {
+        SplittableRandom random = new SplittableRandom(4);
+        int[][] puzzle = new Sudoku(new SplittableRandom(4)).getNewPuzzle(Sudoku.GRID_9X9, Sudoku.GAME_MODE_EASY);
+        int[][] board = new SudokuSolver(Sudoku.GRID_9X9).solve(puzzle);
+        Canonicalizer canonicalizer = new Canonicalizer(Sudoku.GRID_9X9);
+        String key = canonicalizer.key(board);
+        for (int round = 0; round < ROUNDS; round++) {
+            assertEquals(key, canonicalizer.key(transform(board, random)));
+        }
+    }
+
+    @Test
+    public void differentPuzzlesGetDifferentKeys() {
+        Sudoku sudoku = new Sudoku(new SplittableRandom(5));
+        Canonicalizer canonicalizer = new Canonicalizer(Sudoku.GRID_9X9);
+        int[][] first = sudoku.getNewPuzzle(Sudoku.GRID_9X9, Sudoku.GAME_MODE_MEDIUM);
+        int[][] second = sudoku.getNewPuzzle(Sudoku.GRID_9X9, Sudoku.GAME_MODE_MEDIUM);
+        assertFalse(canonicalizer.key(first).equals(canonicalizer.key(second)));
+    }
+
+    private static void checkSymmetries(int grid, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        Sudoku sudoku = new Sudoku(new SplittableRandom(seed));
+        Canonicalizer canonicalizer = new Canonicalizer(grid);
+        for (int puzzles = 0; puzzles < 3; puzzles++) {
+            int[][] puzzle = sudoku.getNewPuzzle(grid, Sudoku.GAME_MODE_MEDIUM);
+            String key = canonicalizer.key(puzzle);
+            long hash = canonicalizer.hash(puzzle);
+            long fingerprint = canonicalizer.fingerprint(puzzle);
+            for (int round = 0; round < ROUNDS; round++) {
+                int[][] other = transform(puzzle, random);
+                assertEquals(key, canonicalizer.key(other));
+                assertEquals(hash, canonicalizer.hash(other));
+                assertEquals(fingerprint, canonicalizer.fingerprint(other));
+            }
+        }
+    }
+
+    // The board after a random reordering of bands, rows in each band,
+    // stacks and columns in each stack, a transpose when boxes are square
+    // and a relabeling of digits.
+    private static int[][] transform(int[][] board, SplittableRandom random) {
+        int size = board.length;
+        BoardGeometry geometry = BoardGeometry.of(size);
+        int[] rows = permutation(geometry.getBoxRows(), geometry.getBoxCols(), random);
+        int[] cols = permutation(geometry.getBoxCols(), geometry.getBoxRows(), random);
+        int[] digits = shuffled(size + 1, 1, random);
+        boolean transpose = geometry.getBoxRows() == geometry.getBoxCols() && random.nextBoolean();
+        int[][] result = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int digit = board[rows[i]][cols[j]];
+                if (transpose) {
+                    result[j][i] = digits[digit];
+                } else {
+                    result[i][j] = digits[digit];
+                }
+            }
+        }
+        return result;
+    }
+
+    // Source line of every line, groups of width lines reordered and the
+    // lines inside every group reordered.
+    private static int[] permutation(int width, int groups, SplittableRandom random) {
+        int[] groupOrder = shuffled(groups, 0, random);
+        int[] lines = new int[width * groups];
+        for (int g = 0; g < groups; g++) {
+            int[] lineOrder = shuffled(width, 0, random);
+            for (int k = 0; k < width; k++) {
+                lines[g * width + k] = groupOrder[g] * width + lineOrder[k];
+            }
+        }
+        return lines;
+    }
+
+    // 0 to length - 1 with the values from first on shuffled.
+    private static int[] shuffled(int length, int first, SplittableRandom random) {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = i;
+        }
+        for (int i = length - 1; i > first; i--) {
+            int k = first + random.nextInt(i - first + 1);
+            int value = values[i];
+            values[i] = values[k];
+            values[k] = value;
+        }
+        return values;
+    }
+}
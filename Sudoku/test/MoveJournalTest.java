@@ -0,0 +1,126 @@
+/**
+ *
+ * @author jithu
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+
+// A journal left by a crash ends in a torn or damaged record, opening it
+// must give the board of the last good move.
+public class MoveJournalTest {
+
+    private static final String PUZZLE =
+            "..8...........53...9238..416.4...2.7.2...619...5...8..1.95.27..8...9..2.2.37..4.9";
+    private static final int MOVES = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replaysAllMovesOfAnIntactJournal() throws IOException {
+        File file = folder.newFile("game.journal");
+        int[][] boards = play(file);
+        MoveJournal journal = MoveJournal.open(file);
+        assertArrayEquals(boards[MOVES], journal.getCells());
+        journal.close();
+    }
+
+    @Test
+    public void truncatedTailReplaysToLastCompleteMove() throws IOException {
+        File file = folder.newFile("game.journal");
+        int[][] boards = play(file);
+        // The clock record of close and half of the last move are gone.
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(out.length() - MoveJournal.RECORD_SIZE - MoveJournal.RECORD_SIZE / 2);
+        } finally {
+            out.close();
+        }
+        MoveJournal journal = MoveJournal.open(file);
+        assertArrayEquals(boards[MOVES - 1], journal.getCells());
+        journal.close();
+    }
+
+    @Test
+    public void corruptedTailReplaysToLastGoodMove() throws IOException {
+        File file = folder.newFile("game.journal");
+        int[][] boards = play(file);
+        // Damage the digit of the last move, its check byte no longer fits.
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            long digit = out.length() - 2 * MoveJournal.RECORD_SIZE + 1;
+            out.seek(digit);
+            int value = out.read();
+            out.seek(digit);
+            out.write(value ^ 0x40);
+        } finally {
+            out.close();
+        }
+        MoveJournal journal = MoveJournal.open(file);
+        assertArrayEquals(boards[MOVES - 1], journal.getCells());
+        journal.close();
+    }
+
+    @Test
+    public void movesAfterADamagedTailAreKept() throws IOException {
+        File file = folder.newFile("game.journal");
+        int[][] boards = play(file);
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.setLength(out.length() - MoveJournal.RECORD_SIZE - 3);
+        } finally {
+            out.close();
+        }
+        // The damaged record is cut off on open, a move made then has to
+        // follow the good ones and not the garbage.
+        MoveJournal journal = MoveJournal.open(file);
+        BoardModel model = new BoardModel(journal.getPuzzle());
+        journal.attach(model, new StopWatch());
+        int[] expected = boards[MOVES].clone();
+        int cell = lastMoveCell(boards);
+        model.set(cell / 9, cell % 9, expected[cell]);
+        journal.close();
+        journal = MoveJournal.open(file);
+        assertArrayEquals(expected, journal.getCells());
+        journal.close();
+    }
+
+    // Fill the first empty cells with their solution one move at a time
+    // and close the journal. Returns the board before the first move and
+    // after every move.
+    private static int[][] play(File file) throws IOException {
+        int[][] puzzle = PuzzleFormat.parse(PUZZLE);
+        int[][] solution = new SudokuSolver(9).solve(puzzle);
+        MoveJournal journal = MoveJournal.create(file, puzzle);
+        BoardModel model = new BoardModel(puzzle);
+        journal.attach(model, new StopWatch());
+        int[][] boards = new int[MOVES + 1][];
+        boards[0] = journal.getCells();
+        int cell = 0;
+        for (int move = 1; move <= MOVES; move++) {
+            while (puzzle[cell / 9][cell % 9] != 0) {
+                cell++;
+            }
+            model.set(cell / 9, cell % 9, solution[cell / 9][cell % 9]);
+            boards[move] = journal.getCells();
+            cell++;
+        }
+        journal.close();
+        return boards;
+    }
+
+    // Cell of the last move of play.
+    private static int lastMoveCell(int[][] boards) {
+        for (int cell = 0; cell < boards[MOVES].length; cell++) {
+            if (boards[MOVES][cell] != boards[MOVES - 1][cell]) {
+                return cell;
+            }
+        }
+        throw new AssertionError("No move");
+    }
+}
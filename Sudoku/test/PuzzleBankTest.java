@@ -0,0 +1,210 @@
+/**
+ *
+ * @author jithu
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.SplittableRandom;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Puzzles appended by PuzzleBankWriter come back unchanged from
+// PuzzleBank, also when drawn through a PuzzleIndex.
+public class PuzzleBankTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendedPuzzlesReadBack() throws IOException {
+        File bankFile = new File(folder.getRoot(), "puzzles.bank");
+        int[][][] puzzles = newPuzzles(Sudoku.GRID_9X9, Sudoku.GRID_6X6, Sudoku.GRID_12X12, Sudoku.GRID_9X9);
+        PuzzleBankWriter writer = new PuzzleBankWriter(bankFile, 144);
+        for (int i = 0; i < puzzles.length; i++) {
+            writer.append(puzzles[i], i);
+        }
+        writer.close();
+
+        PuzzleBank bank = new PuzzleBank(bankFile);
+        try {
+            assertEquals(puzzles.length, bank.size());
+            for (int i = 0; i < puzzles.length; i++) {
+                int grid = puzzles[i].length;
+                assertEquals(grid, bank.getGrid(i));
+                assertEquals(i, bank.getDifficulty(i));
+                assertArrayEquals(puzzles[i], bank.read(i));
+                assertEquals(puzzles[i][grid - 1][grid - 1], bank.getCell(i, grid - 1, grid - 1));
+            }
+        } finally {
+            bank.close();
+        }
+    }
+
+    @Test
+    public void reopenedWriterAppends() throws IOException {
+        File bankFile = new File(folder.getRoot(), "puzzles.bank");
+        int[][][] puzzles = newPuzzles(Sudoku.GRID_9X9, Sudoku.GRID_9X9, Sudoku.GRID_6X6);
+        for (int i = 0; i < puzzles.length; i++) {
+            PuzzleBankWriter writer = new PuzzleBankWriter(bankFile);
+            writer.append(puzzles[i], 1);
+            writer.close();
+        }
+        PuzzleBank bank = new PuzzleBank(bankFile);
+        try {
+            assertEquals(puzzles.length, bank.size());
+            for (int i = 0; i < puzzles.length; i++) {
+                assertArrayEquals(puzzles[i], bank.read(i));
+            }
+        } finally {
+            bank.close();
+        }
+    }
+
+    @Test
+    public void reopenedWriterDropsATornRecord() throws IOException {
+        File bankFile = new File(folder.getRoot(), "puzzles.bank");
+        int[][][] puzzles = newPuzzles(Sudoku.GRID_9X9, Sudoku.GRID_9X9);
+        PuzzleBankWriter writer = new PuzzleBankWriter(bankFile);
+        writer.append(puzzles[0], 1);
+        writer.close();
+        RandomAccessFile out = new RandomAccessFile(bankFile, "rw");
+        try {
+            out.seek(out.length());
+            out.write(new byte[5]);
+        } finally {
+            out.close();
+        }
+        writer = new PuzzleBankWriter(bankFile);
+        writer.append(puzzles[1], 2);
+        writer.close();
+
+        PuzzleBank bank = new PuzzleBank(bankFile);
+        try {
+            assertEquals(2, bank.size());
+            assertArrayEquals(puzzles[0], bank.read(0));
+            assertArrayEquals(puzzles[1], bank.read(1));
+        } finally {
+            bank.close();
+        }
+    }
+
+    @Test
+    public void invalidPuzzleLeavesNoPartialRecord() throws IOException {
+        File bankFile = new File(folder.getRoot(), "puzzles.bank");
+        int[][][] puzzles = newPuzzles(Sudoku.GRID_9X9, Sudoku.GRID_9X9);
+        int[][] invalid = copyOf(puzzles[0]);
+        invalid[8][8] = 10;
+        PuzzleBankWriter writer = new PuzzleBankWriter(bankFile);
+        writer.append(puzzles[0], 0);
+        try {
+            writer.append(invalid, 0);
+            fail("A digit above the grid was appended");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        writer.append(puzzles[1], 2);
+        writer.close();
+
+        PuzzleBank bank = new PuzzleBank(bankFile);
+        try {
+            assertEquals(2, bank.size());
+            assertArrayEquals(puzzles[0], bank.read(0));
+            assertArrayEquals(puzzles[1], bank.read(1));
+            assertEquals(2, bank.getDifficulty(1));
+        } finally {
+            bank.close();
+        }
+    }
+
+    @Test
+    public void drawnPuzzlesMatchTheirDifficulty() throws IOException {
+        File bankFile = new File(folder.getRoot(), "puzzles.bank");
+        int[][][] puzzles = newPuzzles(Sudoku.GRID_9X9, Sudoku.GRID_9X9, Sudoku.GRID_9X9, Sudoku.GRID_6X6);
+        int[] difficulties = {0, 1, 4, 1};
+        PuzzleBankWriter writer = new PuzzleBankWriter(bankFile);
+        for (int i = 0; i < puzzles.length; i++) {
+            writer.append(puzzles[i], difficulties[i]);
+        }
+        writer.close();
+
+        PuzzleBank bank = new PuzzleBank(bankFile);
+        try {
+            PuzzleIndex index = PuzzleIndex.open(bankFile, bank);
+            SplittableRandom random = new SplittableRandom(7);
+            assertEquals(2, index.count(Sudoku.GRID_9X9, 1) + index.count(Sudoku.GRID_6X6, 1));
+            for (int i = 0; i < puzzles.length; i++) {
+                int grid = puzzles[i].length;
+                long drawn = index.draw(grid, difficulties[i], random);
+                assertEquals(i, drawn);
+                assertArrayEquals(puzzles[i], bank.read(drawn));
+            }
+            for (int k = 0; k < 20; k++) {
+                long drawn = index.draw(Sudoku.GRID_9X9, 1, 4, random);
+                assertEquals(Sudoku.GRID_9X9, bank.getGrid(drawn));
+                int difficulty = bank.getDifficulty(drawn);
+                assertTrue(difficulty == 1 || difficulty == 4);
+            }
+            assertEquals(-1, index.draw(Sudoku.GRID_9X9, 2, 3, random));
+            assertEquals(-1, index.draw(Sudoku.GRID_12X12, 0, random));
+        } finally {
+            bank.close();
+        }
+    }
+
+    @Test
+    public void replacedBankIsIndexedAgain() throws IOException {
+        File bankFile = new File(folder.getRoot(), "puzzles.bank");
+        int[][][] puzzles = newPuzzles(Sudoku.GRID_9X9, Sudoku.GRID_9X9);
+        PuzzleBankWriter writer = new PuzzleBankWriter(bankFile);
+        for (int[][] puzzle : puzzles) {
+            writer.append(puzzle, 1);
+        }
+        writer.close();
+        PuzzleBank bank = new PuzzleBank(bankFile);
+        PuzzleIndex.open(bankFile, bank);
+        bank.close();
+
+        // A bank with more records of another grid in its place.
+        int[][][] others = newPuzzles(Sudoku.GRID_6X6, Sudoku.GRID_6X6, Sudoku.GRID_6X6);
+        File replacement = new File(folder.getRoot(), "other.bank");
+        writer = new PuzzleBankWriter(replacement);
+        for (int[][] puzzle : others) {
+            writer.append(puzzle, 1);
+        }
+        writer.close();
+        assertTrue(bankFile.delete() && replacement.renameTo(bankFile));
+
+        bank = new PuzzleBank(bankFile);
+        try {
+            PuzzleIndex index = PuzzleIndex.open(bankFile, bank);
+            assertEquals(-1, index.draw(Sudoku.GRID_9X9, 1, new SplittableRandom(1)));
+            assertEquals(others.length, index.count(Sudoku.GRID_6X6, 1));
+        } finally {
+            bank.close();
+        }
+    }
+
+    // Generated puzzles of the given grids, the same on every run.
+    private static int[][][] newPuzzles(int... grids) {
+        Sudoku sudoku = new Sudoku(new SplittableRandom(42));
+        int[][][] puzzles = new int[grids.length][][];
+        for (int i = 0; i < grids.length; i++) {
+            puzzles[i] = sudoku.getNewPuzzle(grids[i], Sudoku.GAME_MODE_EASY);
+        }
+        return puzzles;
+    }
+
+    private static int[][] copyOf(int[][] puzzle) {
+        int[][] copy = new int[puzzle.length][];
+        for (int i = 0; i < puzzle.length; i++) {
+            copy[i] = puzzle[i].clone();
+        }
+        return copy;
+    }
+}